@@ -0,0 +1,32 @@
+package com.deadlock.agent;
+
+/**
+ * {@link LockOrderMXBean} backed by {@link LockOrderRecorder}.
+ */
+public class LockOrder implements LockOrderMXBean {
+
+    @Override
+    public long getEdgeCount() {
+        return LockOrderRecorder.edgeCount();
+    }
+
+    @Override
+    public String[] getInversions() {
+        return LockOrderRecorder.inversions();
+    }
+
+    @Override
+    public String[] getPotentialDeadlocks() {
+        return LockOrderRecorder.potentialDeadlocks();
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return LockOrderRecorder.droppedEvents();
+    }
+
+    @Override
+    public void reset() {
+        LockOrderRecorder.reset();
+    }
+}
@@ -0,0 +1,112 @@
+package com.deadlock.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Entry point of the lock-order agent.
+ *
+ * Loaded with {@code -javaagent:deadlock-agent.jar[=options]} or attached at runtime through
+ * {@code VirtualMachine.loadAgent}. Installs {@link LockOrderTransformer}, retransforms the
+ * classes already loaded when attached late, and registers {@link LockOrderMXBean} under
+ * {@link #OBJECT_NAME}. The compact {@link WaitGraphMXBean} ({@link #WAIT_GRAPH_OBJECT_NAME}) is
+ * always registered. Options are comma separated:
+ * <ul>
+ *   <li>{@code include=com.example.;org.acme.} - only instrument these package prefixes</li>
+ *   <li>{@code edges=65536} - capacity of the global lock-order table</li>
+ *   <li>{@code lockorder=false} - register only the wait-graph MBean, no instrumentation</li>
+ * </ul>
+ */
+public final class LockOrderAgent {
+
+    public static final String OBJECT_NAME = "com.deadlock.agent:type=LockOrder";
+    public static final String WAIT_GRAPH_OBJECT_NAME = "com.deadlock.agent:type=WaitGraph";
+
+    private static volatile boolean installed;
+    private static volatile boolean waitGraphInstalled;
+
+    private LockOrderAgent() {
+    }
+
+    public static void premain(String args, Instrumentation inst) {
+        install(args, inst, false);
+    }
+
+    public static void agentmain(String args, Instrumentation inst) {
+        install(args, inst, true);
+    }
+
+    private static synchronized void install(String args, Instrumentation inst, boolean late) {
+        if (!waitGraphInstalled) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new WaitGraph(), new ObjectName(WAIT_GRAPH_OBJECT_NAME));
+                waitGraphInstalled = true;
+                System.out.println("[deadlock-agent] wait-graph MBean registered");
+            } catch (Exception e) {
+                System.err.println("[deadlock-agent] could not register wait-graph MBean: " + e);
+            }
+        }
+        if (installed) {
+            System.out.println("[deadlock-agent] already installed");
+            return;
+        }
+        List<String> includes = new ArrayList<>();
+        int edgeCapacity = 1 << 16;
+        boolean lockOrder = true;
+        if (args != null) {
+            for (String option : args.split(",")) {
+                String[] kv = option.split("=", 2);
+                if (kv.length != 2) continue;
+                switch (kv[0].trim()) {
+                    case "include" -> {
+                        for (String prefix : kv[1].split(";")) {
+                            if (!prefix.isBlank()) includes.add(prefix.trim().replace('.', '/'));
+                        }
+                    }
+                    case "edges" -> edgeCapacity = Integer.parseInt(kv[1].trim());
+                    case "lockorder" -> lockOrder = Boolean.parseBoolean(kv[1].trim());
+                    default -> System.out.println("[deadlock-agent] unknown option " + kv[0]);
+                }
+            }
+        }
+        if (!lockOrder) {
+            return; // may be loaded again later with lock-order recording on
+        }
+
+        LockOrderRecorder.init(edgeCapacity);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new LockOrder(), new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            System.err.println("[deadlock-agent] could not register MBean: " + e);
+        }
+
+        LockOrderTransformer transformer = new LockOrderTransformer(includes);
+        inst.addTransformer(transformer, true);
+        installed = true;
+
+        if (late && inst.isRetransformClassesSupported()) {
+            List<Class<?>> candidates = new ArrayList<>();
+            for (Class<?> c : inst.getAllLoadedClasses()) {
+                if (inst.isModifiableClass(c) && transformer.accepts(c.getClassLoader(), c.getName().replace('.', '/'))) {
+                    candidates.add(c);
+                }
+            }
+            for (Class<?> c : candidates) {
+                try {
+                    inst.retransformClasses(c);
+                } catch (Throwable t) {
+                    // a class the JVM refuses to retransform just stays uninstrumented
+                }
+            }
+            System.out.println("[deadlock-agent] retransformed " + candidates.size() + " loaded classes");
+        }
+        System.out.println("[deadlock-agent] lock-order recording active"
+                + (includes.isEmpty() ? "" : " for " + includes));
+    }
+}
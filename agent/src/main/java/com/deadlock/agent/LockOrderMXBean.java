@@ -0,0 +1,23 @@
+package com.deadlock.agent;
+
+/**
+ * Lock-order report of an instrumented JVM, registered as {@value LockOrderAgent#OBJECT_NAME}.
+ * Only open types, so a client can read it with plain {@code getAttribute} calls.
+ */
+public interface LockOrderMXBean {
+
+    /** Distinct "held A while acquiring B" edges recorded so far. */
+    long getEdgeCount();
+
+    /** Pairs of locks taken in both orders ("A -> B" and "B -> A"), with the first call site of each order. */
+    String[] getInversions();
+
+    /** Cycles in the lock-order graph, including ones longer than two locks. */
+    String[] getPotentialDeadlocks();
+
+    /** Edges that did not fit in the table and acquisitions nested deeper than the per-thread buffer. */
+    long getDroppedEvents();
+
+    /** Forget everything recorded so far. */
+    void reset();
+}
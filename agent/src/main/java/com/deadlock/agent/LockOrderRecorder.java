@@ -0,0 +1,410 @@
+package com.deadlock.agent;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Global lock-order graph fed by instrumented code.
+ *
+ * Every thread keeps a fixed-size buffer of the locks it holds. Acquiring lock B while holding A
+ * records the edge A -> B in a striped, open-addressing table of packed {@code long} keys
+ * (identity hash of A in the high half, of B in the low half). A per-thread direct-mapped cache
+ * of edges already seen keeps the steady state to a few array reads: nothing is allocated and
+ * no shared memory is written unless the edge is new. A new edge whose reverse already exists
+ * is a lock-order inversion - a deadlock waiting for the wrong interleaving - and is reported
+ * right away; longer cycles are found when the report is read.
+ *
+ * Locks are identified by identity hash code, so two distinct locks can (rarely) collide.
+ * {@code tryLock} acquisitions are tracked as held but never add edges: they cannot block.
+ */
+public final class LockOrderRecorder {
+
+    private static final int STRIPES = 16;
+    private static final int HELD_DEPTH = 32;
+    private static final int CACHE_SIZE = 256;
+    private static final int MAX_SITES = 4096;
+    private static final int THREAD_SLOTS = 4096;
+
+    private static volatile AtomicLongArray[] stripes = newTable(1 << 16);
+    private static volatile int epoch;
+    private static final LongAdder edges = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+    private static final Map<Integer, String> lockNames = new ConcurrentHashMap<>();
+    private static final Map<Long, String> edgeSites = new ConcurrentHashMap<>();
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private static final ThreadLocal<Held> HELD = ThreadLocal.withInitial(Held::new);
+    // direct-mapped by thread id in front of HELD: a field load and a compare instead of a map lookup
+    private static final Held[] BY_THREAD = new Held[THREAD_SLOTS];
+
+    private LockOrderRecorder() {
+    }
+
+    /**
+     * Per-thread held-lock buffer and seen-edge cache, allocated once per thread.
+     */
+    private static final class Held {
+        final long tid = Thread.currentThread().threadId();
+        final WeakReference<Thread> thread = new WeakReference<>(Thread.currentThread());
+        final int[] ids = new int[HELD_DEPTH];
+        final Object[] locks = new Object[HELD_DEPTH];
+        final long[] seen = new long[CACHE_SIZE];
+        int depth;
+        int overflow;
+        int epoch = LockOrderRecorder.epoch;
+
+        boolean isAlive() {
+            Thread t = thread.get();
+            return t != null && t.isAlive();
+        }
+    }
+
+    private static Held held() {
+        long tid = Thread.currentThread().threadId();
+        int slot = (int) tid & (THREAD_SLOTS - 1);
+        Held held = BY_THREAD[slot];
+        if (held != null && held.tid == tid) {
+            return held;
+        }
+        held = HELD.get();
+        Held occupant = BY_THREAD[slot];
+        if (occupant == null || !occupant.isAlive()) {
+            BY_THREAD[slot] = held; // a racing write just means one of the two takes the slow path
+        }
+        return held;
+    }
+
+    static void init(int edgeCapacity) {
+        stripes = newTable(edgeCapacity);
+    }
+
+    // ---- hooks called from instrumented code ----
+
+    public static void onMonitorEnter(Object lock) {
+        acquired(lock, true);
+    }
+
+    public static void onMonitorExit(Object lock) {
+        released(lock);
+    }
+
+    public static void lock(Lock lock) {
+        acquired(lock, true);
+        lock.lock();
+    }
+
+    public static void lockInterruptibly(Lock lock) throws InterruptedException {
+        acquired(lock, true);
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            released(lock);
+            throw e;
+        }
+    }
+
+    public static boolean tryLock(Lock lock) {
+        boolean locked = lock.tryLock();
+        if (locked) acquired(lock, false);
+        return locked;
+    }
+
+    public static boolean tryLock(Lock lock, long time, TimeUnit unit) throws InterruptedException {
+        boolean locked = lock.tryLock(time, unit);
+        if (locked) acquired(lock, false);
+        return locked;
+    }
+
+    public static void unlock(Lock lock) {
+        lock.unlock();
+        released(lock);
+    }
+
+    // ---- recording ----
+
+    private static void acquired(Object lock, boolean ordered) {
+        Held held = held();
+        int currentEpoch = epoch;
+        if (held.epoch != currentEpoch) {
+            Arrays.fill(held.seen, 0L);
+            held.epoch = currentEpoch;
+        }
+        int id = System.identityHashCode(lock);
+        int depth = held.depth;
+        if (ordered) {
+            for (int i = 0; i < depth; i++) {
+                int from = held.ids[i];
+                if (from != id) {
+                    edge(held, from, id, held.locks[i], lock);
+                }
+            }
+        }
+        if (depth < HELD_DEPTH) {
+            held.ids[depth] = id;
+            held.locks[depth] = lock;
+            held.depth = depth + 1;
+        } else {
+            held.overflow++;
+            dropped.increment();
+        }
+    }
+
+    private static void released(Object lock) {
+        // match by reference: hashing a monitor that is still locked takes a slow path in the VM
+        Held held = held();
+        int top = held.depth - 1;
+        if (top >= 0 && held.locks[top] == lock) {
+            // the usual case: locks are released in reverse order
+            held.locks[top] = null;
+            held.depth = top;
+            return;
+        }
+        for (int i = top - 1; i >= 0; i--) {
+            if (held.locks[i] == lock) {
+                int last = held.depth - 1;
+                System.arraycopy(held.ids, i + 1, held.ids, i, last - i);
+                System.arraycopy(held.locks, i + 1, held.locks, i, last - i);
+                held.locks[last] = null;
+                held.depth = last;
+                return;
+            }
+        }
+        if (held.overflow > 0) held.overflow--;
+    }
+
+    private static void edge(Held held, int from, int to, Object fromLock, Object toLock) {
+        long key = key(from, to);
+        int slot = mix(key) & (CACHE_SIZE - 1);
+        if (held.seen[slot] == key) {
+            return;
+        }
+        if (insert(key)) {
+            newEdge(key, from, to, fromLock, toLock);
+        }
+        held.seen[slot] = key;
+    }
+
+    /**
+     * Add a key to the global table.
+     *
+     * @return true if it was not there before
+     */
+    private static boolean insert(long key) {
+        AtomicLongArray[] table = stripes;
+        int h = mix(key);
+        AtomicLongArray stripe = table[h & (STRIPES - 1)];
+        int mask = stripe.length() - 1;
+        int i = (h >>> 4) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long existing = stripe.get(i);
+            if (existing == key) return false;
+            if (existing == 0L) {
+                if (stripe.compareAndSet(i, 0L, key)) return true;
+                if (stripe.get(i) == key) return false;
+                continue; // lost the slot to another key, re-read it
+            }
+            i = (i + 1) & mask;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private static boolean contains(long key) {
+        AtomicLongArray[] table = stripes;
+        int h = mix(key);
+        AtomicLongArray stripe = table[h & (STRIPES - 1)];
+        int mask = stripe.length() - 1;
+        int i = (h >>> 4) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long existing = stripe.get(i);
+            if (existing == key) return true;
+            if (existing == 0L) return false;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Slow path, once per distinct edge: remember names and call site, check for an inversion.
+     */
+    private static void newEdge(long key, int from, int to, Object fromLock, Object toLock) {
+        edges.increment();
+        lockNames.putIfAbsent(from, fromLock.getClass().getName());
+        lockNames.putIfAbsent(to, toLock.getClass().getName());
+        if (edgeSites.size() < MAX_SITES) {
+            edgeSites.put(key, Thread.currentThread().getName() + " at " + callSite());
+        }
+        if (contains(key(to, from))) {
+            System.err.println("[deadlock-agent] lock-order inversion: " + describe(key) + " / " + describe(key(to, from)));
+        }
+    }
+
+    private static String callSite() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> !f.getClassName().startsWith("com.deadlock.agent."))
+                .findFirst()
+                .map(f -> f.getClassName() + "." + f.getMethodName() + "(" + f.getFileName() + ":" + f.getLineNumber() + ")")
+                .orElse("?"));
+    }
+
+    // ---- reporting ----
+
+    static long edgeCount() {
+        return edges.sum();
+    }
+
+    static long droppedEvents() {
+        return dropped.sum();
+    }
+
+    static String[] inversions() {
+        List<String> result = new ArrayList<>();
+        for (long key : keys()) {
+            int from = (int) (key >>> 32);
+            int to = (int) key;
+            if (Integer.compareUnsigned(from, to) < 0 && contains(key(to, from))) {
+                result.add(describe(key) + " / " + describe(key(to, from)));
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Strongly connected components of the lock-order graph with more than one lock
+     * (iterative Tarjan); each is a set of locks that some interleaving can deadlock on.
+     */
+    static String[] potentialDeadlocks() {
+        long[] keys = keys();
+        Map<Integer, Integer> index = new HashMap<>();
+        List<Integer> nodes = new ArrayList<>();
+        for (long key : keys) {
+            for (int id : new int[] {(int) (key >>> 32), (int) key}) {
+                if (!index.containsKey(id)) {
+                    index.put(id, nodes.size());
+                    nodes.add(id);
+                }
+            }
+        }
+        int n = nodes.size();
+        List<List<Integer>> successors = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) successors.add(new ArrayList<>());
+        for (long key : keys) {
+            successors.get(index.get((int) (key >>> 32))).add(index.get((int) key));
+        }
+
+        int[] order = new int[n];
+        int[] low = new int[n];
+        int[] edgeCursor = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(order, -1);
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        ArrayDeque<Integer> call = new ArrayDeque<>();
+        List<String> result = new ArrayList<>();
+        int counter = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] >= 0) continue;
+            call.push(root);
+            while (!call.isEmpty()) {
+                int v = call.peek();
+                if (order[v] < 0) {
+                    order[v] = low[v] = counter++;
+                    stack.push(v);
+                    onStack[v] = true;
+                }
+                List<Integer> next = successors.get(v);
+                if (edgeCursor[v] < next.size()) {
+                    int w = next.get(edgeCursor[v]++);
+                    if (order[w] < 0) {
+                        call.push(w);
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+                call.pop();
+                if (!call.isEmpty()) {
+                    int parent = call.peek();
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] == order[v]) {
+                    List<String> component = new ArrayList<>();
+                    int w;
+                    do {
+                        w = stack.pop();
+                        onStack[w] = false;
+                        component.add(name(nodes.get(w)));
+                    } while (w != v);
+                    if (component.size() > 1) {
+                        result.add(component.size() + " locks: " + String.join(", ", component));
+                    }
+                }
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    static void reset() {
+        AtomicLongArray[] table = stripes;
+        for (AtomicLongArray stripe : table) {
+            for (int i = 0; i < stripe.length(); i++) stripe.set(i, 0L);
+        }
+        edges.reset();
+        dropped.reset();
+        lockNames.clear();
+        edgeSites.clear();
+        epoch++;
+    }
+
+    private static long[] keys() {
+        long[] out = new long[64];
+        int count = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < stripe.length(); i++) {
+                long key = stripe.get(i);
+                if (key == 0L) continue;
+                if (count == out.length) out = Arrays.copyOf(out, count * 2);
+                out[count++] = key;
+            }
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    private static String describe(long key) {
+        String site = edgeSites.get(key);
+        return name((int) (key >>> 32)) + " -> " + name((int) key) + (site != null ? " (" + site + ")" : "");
+    }
+
+    private static String name(int id) {
+        return lockNames.getOrDefault(id, "lock") + "@" + Integer.toHexString(id);
+    }
+
+    private static long key(int from, int to) {
+        // never 0 (the empty-slot marker): edges always join two different ids
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static AtomicLongArray[] newTable(int capacity) {
+        int perStripe = Integer.highestOneBit(Math.max(64, capacity / STRIPES) - 1) << 1;
+        AtomicLongArray[] table = new AtomicLongArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            table[i] = new AtomicLongArray(perStripe);
+        }
+        return table;
+    }
+}
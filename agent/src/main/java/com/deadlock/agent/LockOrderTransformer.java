@@ -0,0 +1,271 @@
+package com.deadlock.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Rewrites application classes so every lock acquisition and release reports to
+ * {@link LockOrderRecorder}:
+ * <ul>
+ *   <li>{@code monitorenter}/{@code monitorexit} get a call with the monitor just before them;</li>
+ *   <li>synchronized methods become plain methods that lock the receiver (or class) with an
+ *       explicit {@code monitorenter}, reported like any other, and unlock it on every return and
+ *       in an added catch-all handler that rethrows. Retransformation may not change modifiers, so
+ *       classes instrumented after an attach keep the flag and report from inside the method;</li>
+ *   <li>call sites of {@code lock}/{@code lockInterruptibly}/{@code tryLock}/{@code unlock} on
+ *       {@code Lock}, {@code ReentrantLock} and the read/write locks of
+ *       {@code ReentrantReadWriteLock} are redirected to the recorder's static wrappers.</li>
+ * </ul>
+ * JDK classes and classes of the boot and platform loaders are never touched, nor are classes of
+ * loaders that do not resolve {@code LockOrderRecorder} to this agent's copy (e.g. OSGi bundles
+ * that don't delegate to the system loader): their rewritten call sites would fail to link.
+ */
+public class LockOrderTransformer implements ClassFileTransformer {
+
+    private static final String RECORDER = "com/deadlock/agent/LockOrderRecorder";
+    private static final String LOCK = "java/util/concurrent/locks/Lock";
+    private static final Set<String> LOCK_OWNERS = Set.of(
+            LOCK,
+            "java/util/concurrent/locks/ReentrantLock",
+            "java/util/concurrent/locks/ReentrantReadWriteLock$ReadLock",
+            "java/util/concurrent/locks/ReentrantReadWriteLock$WriteLock");
+    private static final Set<String> LOCK_METHODS = Set.of(
+            "lock()V",
+            "lockInterruptibly()V",
+            "tryLock()Z",
+            "tryLock(JLjava/util/concurrent/TimeUnit;)Z",
+            "unlock()V");
+    private static final String[] EXCLUDED = {
+            "com/deadlock/agent/", "java/", "javax/", "jdk/", "sun/", "com/sun/"
+    };
+
+    private final List<String> includes;
+    // loader -> whether it resolves the recorder to ours; weak so undeployed loaders can go
+    private final Map<ClassLoader, Boolean> recorderVisible = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public LockOrderTransformer(List<String> includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * Whether a class (internal name) is instrumented at all.
+     */
+    boolean accepts(ClassLoader loader, String className) {
+        if (loader == null || loader == ClassLoader.getPlatformClassLoader() || className == null) {
+            return false;
+        }
+        for (String prefix : EXCLUDED) {
+            if (className.startsWith(prefix)) return false;
+        }
+        boolean included = includes.isEmpty();
+        for (String prefix : includes) {
+            if (className.startsWith(prefix)) {
+                included = true;
+                break;
+            }
+        }
+        return included && seesRecorder(loader);
+    }
+
+    /**
+     * Whether {@code loader} resolves the recorder to the class the agent initialised. Looked up
+     * without holding the cache lock: the lookup may load classes and re-enter the transformer.
+     */
+    private boolean seesRecorder(ClassLoader loader) {
+        Boolean visible = recorderVisible.get(loader);
+        if (visible == null) {
+            try {
+                visible = Class.forName(RECORDER.replace('/', '.'), false, loader) == LockOrderRecorder.class;
+            } catch (Throwable t) {
+                visible = false;
+            }
+            recorderVisible.put(loader, visible);
+        }
+        return visible;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (!accepts(loader, className)) {
+            return null;
+        }
+        try {
+            ClassReader reader = new ClassReader(classfileBuffer);
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            LockClassVisitor visitor = new LockClassVisitor(writer, classBeingRedefined == null);
+            reader.accept(visitor, ClassReader.EXPAND_FRAMES);
+            return visitor.changed ? writer.toByteArray() : null;
+        } catch (Throwable t) {
+            // leave the class as it was rather than break the target
+            return null;
+        }
+    }
+
+    private static final class LockClassVisitor extends ClassVisitor {
+        private final boolean mayChangeModifiers;
+        private String className;
+        private int version;
+        boolean changed;
+
+        LockClassVisitor(ClassVisitor next, boolean mayChangeModifiers) {
+            super(Opcodes.ASM9, next);
+            this.mayChangeModifiers = mayChangeModifiers;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.className = name;
+            this.version = version & 0xFFFF;
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            boolean isStatic = (access & Opcodes.ACC_STATIC) != 0;
+            boolean synced = (access & Opcodes.ACC_SYNCHRONIZED) != 0
+                    && (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0
+                    && (!isStatic || version >= Opcodes.V1_5); // static needs ldc of a class constant
+            boolean explicit = synced && mayChangeModifiers;
+            int newAccess = explicit ? access & ~Opcodes.ACC_SYNCHRONIZED : access;
+            MethodVisitor mv = super.visitMethod(newAccess, name, descriptor, signature, exceptions);
+            return new LockMethodVisitor(mv, this, synced, explicit, isStatic);
+        }
+    }
+
+    private static final class LockMethodVisitor extends MethodVisitor {
+        private final LockClassVisitor owner;
+        private final boolean synced;
+        private final boolean explicit;
+        private final boolean isStatic;
+        private final Label start = new Label();
+        private final Label end = new Label();
+        private final Label handler = new Label();
+
+        LockMethodVisitor(MethodVisitor next, LockClassVisitor owner, boolean synced, boolean explicit, boolean isStatic) {
+            super(Opcodes.ASM9, next);
+            this.owner = owner;
+            this.synced = synced;
+            this.explicit = explicit;
+            this.isStatic = isStatic;
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            if (synced) {
+                enterMethodLock();
+                super.visitLabel(start);
+                owner.changed = true;
+            }
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            switch (opcode) {
+                case Opcodes.MONITORENTER -> {
+                    super.visitInsn(Opcodes.DUP);
+                    record("onMonitorEnter");
+                    owner.changed = true;
+                }
+                case Opcodes.MONITOREXIT -> {
+                    super.visitInsn(Opcodes.DUP);
+                    record("onMonitorExit");
+                    owner.changed = true;
+                }
+                case Opcodes.IRETURN, Opcodes.LRETURN, Opcodes.FRETURN, Opcodes.DRETURN,
+                     Opcodes.ARETURN, Opcodes.RETURN -> {
+                    if (synced) {
+                        exitMethodLock();
+                    }
+                }
+                default -> { }
+            }
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            if ((opcode == Opcodes.INVOKEINTERFACE || opcode == Opcodes.INVOKEVIRTUAL)
+                    && LOCK_OWNERS.contains(owner) && LOCK_METHODS.contains(name + descriptor)) {
+                String wrapper = "(L" + LOCK + ";" + descriptor.substring(1);
+                super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, name, wrapper, false);
+                this.owner.changed = true;
+                return;
+            }
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            if (synced) {
+                // exceptional exits: release in a catch-all appended after the method's own handlers.
+                // Untyped like javac's 'finally', otherwise HotSpot's monitor analysis assumes the
+                // monitor can leak and C2 refuses to compile the method.
+                super.visitLabel(end);
+                super.visitTryCatchBlock(start, end, handler, null);
+                super.visitLabel(handler);
+                if (owner.version >= Opcodes.V1_6) {
+                    Object[] locals = isStatic ? new Object[0] : new Object[] {owner.className};
+                    super.visitFrame(Opcodes.F_NEW, locals.length, locals, 1, new Object[] {"java/lang/Throwable"});
+                }
+                if (explicit) {
+                    // unlock before calling out: nothing may throw here while the monitor is held
+                    pushMethodLock();
+                    super.visitInsn(Opcodes.MONITOREXIT);
+                }
+                pushMethodLock();
+                record("onMonitorExit");
+                super.visitInsn(Opcodes.ATHROW);
+            }
+            super.visitMaxs(maxStack, maxLocals);
+        }
+
+        private void enterMethodLock() {
+            pushMethodLock();
+            if (explicit) {
+                super.visitInsn(Opcodes.DUP);
+                record("onMonitorEnter");
+                super.visitInsn(Opcodes.MONITORENTER);
+            } else {
+                record("onMonitorEnter");
+            }
+        }
+
+        private void exitMethodLock() {
+            pushMethodLock();
+            if (explicit) {
+                super.visitInsn(Opcodes.DUP);
+                record("onMonitorExit");
+                super.visitInsn(Opcodes.MONITOREXIT);
+            } else {
+                record("onMonitorExit");
+            }
+        }
+
+        private void pushMethodLock() {
+            if (isStatic) {
+                super.visitLdcInsn(Type.getObjectType(owner.className));
+            } else {
+                super.visitVarInsn(Opcodes.ALOAD, 0);
+            }
+        }
+
+        private void record(String hook) {
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER, hook, "(Ljava/lang/Object;)V", false);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.deadlock.agent;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * {@link WaitGraphMXBean} backed by the local {@link ThreadMXBean}.
+ *
+ * Each poll takes one stackless thread sample ({@code maxDepth = 0}) and
+ * {@code findDeadlockedThreads()}, and folds the waiting threads into an order-independent
+ * fingerprint. The version moves only when the fingerprint does, so an idle or steadily
+ * contended target answers with the four header longs.
+ */
+public class WaitGraph implements WaitGraphMXBean {
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long version;
+    private long fingerprint;
+    private long polls;
+    private long unchangedPolls;
+
+    @Override
+    public synchronized long[] poll(long knownVersion) {
+        polls++;
+        ThreadInfo[] infos = threads.getThreadInfo(threads.getAllThreadIds(), 0);
+        long[] deadlocked = threads.findDeadlockedThreads();
+        if (deadlocked == null) {
+            deadlocked = new long[0];
+        }
+        Arrays.sort(deadlocked);
+
+        long[] records = new long[infos.length * RECORD];
+        int waiters = 0;
+        int live = 0;
+        long blocked = 0;
+        int blockedNow = 0;
+        long print = deadlocked.length;
+        for (ThreadInfo info : infos) {
+            if (info == null) continue;
+            live++;
+            blocked += info.getBlockedCount();
+            if (info.getThreadState() == Thread.State.BLOCKED) blockedNow++;
+            LockInfo lock = info.getLockInfo();
+            if (lock == null) continue;
+            int at = waiters++ * RECORD;
+            records[at] = info.getThreadId();
+            records[at + 1] = lock.getIdentityHashCode();
+            records[at + 2] = info.getLockOwnerId();
+            records[at + 3] = info.getThreadState().ordinal();
+            print += mix(records[at] * 31 + records[at + 1]) ^ mix(records[at + 2] * 31 + records[at + 3]);
+        }
+        for (long id : deadlocked) {
+            print = print * 31 + mix(id);
+        }
+        print = print * 31 + waiters;
+
+        if (print != fingerprint || version == 0) {
+            fingerprint = print;
+            version++;
+        }
+        if (version == knownVersion) {
+            unchangedPolls++;
+            return new long[] {version, live, blocked, blockedNow};
+        }
+
+        long[] result = new long[HEADER + 1 + waiters * RECORD + 1 + deadlocked.length];
+        result[0] = version;
+        result[1] = live;
+        result[2] = blocked;
+        result[3] = blockedNow;
+        result[HEADER] = waiters;
+        System.arraycopy(records, 0, result, HEADER + 1, waiters * RECORD);
+        int at = HEADER + 1 + waiters * RECORD;
+        result[at] = deadlocked.length;
+        System.arraycopy(deadlocked, 0, result, at + 1, deadlocked.length);
+        return result;
+    }
+
+    @Override
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    @Override
+    public synchronized long getPolls() {
+        return polls;
+    }
+
+    @Override
+    public synchronized long getUnchangedPolls() {
+        return unchangedPolls;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,37 @@
+package com.deadlock.agent;
+
+/**
+ * Wait-for graph of the JVM it runs in, computed in-process and returned as a flat {@code long[]}
+ * so a remote poll ships a few longs instead of a {@code ThreadInfo} per thread. Registered as
+ * {@value LockOrderAgent#WAIT_GRAPH_OBJECT_NAME}.
+ *
+ * Encoding of {@link #poll}:
+ * <pre>
+ * [0] version       bumped whenever the waiters, their locks, owners, states or the deadlock set change
+ * [1] live threads
+ * [2] blocked       sum of ThreadInfo.getBlockedCount() over all threads
+ * [3] blocked now   threads in state BLOCKED
+ * -- only when version != knownVersion --
+ * [4] W, then W records of (thread id, lock identity hash, owner id or -1, Thread.State ordinal)
+ *     then D, then D ids of deadlocked threads
+ * </pre>
+ */
+public interface WaitGraphMXBean {
+
+    /** Header length; a poll returning just this many longs means "unchanged since knownVersion". */
+    int HEADER = 4;
+
+    /** Record length of one waiting thread. */
+    int RECORD = 4;
+
+    /** Recompute the graph; the edges and deadlock set are included only if it changed since {@code knownVersion}. */
+    long[] poll(long knownVersion);
+
+    /** Version of the last computed graph (no recomputation). */
+    long getVersion();
+
+    /** Polls served, and how many of them answered "unchanged". */
+    long getPolls();
+
+    long getUnchangedPolls();
+}
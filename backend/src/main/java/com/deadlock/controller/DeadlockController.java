@@ -1,12 +1,19 @@
 package com.deadlock.controller;
 
+import java.util.Map;
+
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.deadlock.service.DeadlockService;
+import com.deadlock.service.DetectorMetrics;
+import com.deadlock.service.JfrContentionMonitor;
+import com.deadlock.service.SnapshotPublisher;
+import com.deadlock.service.ThreadDumpService;
 
 /**
  * REST Controller for Deadlock Detection and Resolution API.
@@ -18,9 +25,19 @@ import com.deadlock.service.DeadlockService;
 public class DeadlockController {
 
     private final DeadlockService deadlockService;
+    private final SnapshotPublisher snapshotPublisher;
+    private final JfrContentionMonitor contentionMonitor;
+    private final ThreadDumpService threadDumpService;
+    private final DetectorMetrics detectorMetrics;
 
-    public DeadlockController(DeadlockService deadlockService) {
+    public DeadlockController(DeadlockService deadlockService, SnapshotPublisher snapshotPublisher,
+                              JfrContentionMonitor contentionMonitor, ThreadDumpService threadDumpService,
+                              DetectorMetrics detectorMetrics) {
         this.deadlockService = deadlockService;
+        this.snapshotPublisher = snapshotPublisher;
+        this.contentionMonitor = contentionMonitor;
+        this.threadDumpService = threadDumpService;
+        this.detectorMetrics = detectorMetrics;
     }
 
     /**
@@ -49,16 +66,133 @@ public class DeadlockController {
     }
 
     /**
-     * ✅ Returns resolution and deadlock history.
+     * ✅ Returns the last published snapshot of a delta stream, for clients that detected a sequence gap.
+     */
+    @GetMapping("/state/resync")
+    public ResponseEntity<?> resync(@RequestParam(defaultValue = SnapshotPublisher.LOCAL_STREAM) String stream) {
+        try {
+            return ResponseEntity.ok(snapshotPublisher.current(stream));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error fetching snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ Expands a condensed thread group of the last published snapshot, one page of members at a time.
+     */
+    @GetMapping("/state/groups")
+    public ResponseEntity<?> expandThreadGroup(@RequestParam(defaultValue = SnapshotPublisher.LOCAL_STREAM) String stream,
+                                               @RequestParam String group,
+                                               @RequestParam(defaultValue = "0") int page,
+                                               @RequestParam(defaultValue = "100") int size) {
+        try {
+            Map<String, Object> result = deadlockService.getThreadGroupPage(stream, group, page, size);
+            if (result == null) {
+                return ResponseEntity.status(404).body("No thread group " + group + " on stream " + stream);
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error expanding thread group: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ Returns full-snapshot vs delta publishing counters.
+     */
+    @GetMapping("/state/stream-stats")
+    public ResponseEntity<?> getStreamStats() {
+        try {
+            return ResponseEntity.ok(snapshotPublisher.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error fetching stream stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ Returns probe vs full-dump counters for tiered detection.
+     */
+    @GetMapping("/detection/metrics")
+    public ResponseEntity<?> getDetectionMetrics() {
+        try {
+            return ResponseEntity.ok(deadlockService.getDetectionMetrics());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error fetching detection metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ Detector internals (poll, call, stage and publish latencies, queue depth) in Prometheus text format.
+     */
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public ResponseEntity<?> getMetrics() {
+        try {
+            return ResponseEntity.ok(detectorMetrics.scrape());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error rendering metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ Returns resolution and deadlock history, one page at a time (newest first).
+     * With from/to (epoch millis) the range is served from the persistent journal instead.
      */
     @GetMapping("/deadlocks")
-    public ResponseEntity<?> getAllDeadlocks() {
+    public ResponseEntity<?> getAllDeadlocks(@RequestParam(defaultValue = "0") int page,
+                                             @RequestParam(defaultValue = "50") int size,
+                                             @RequestParam(required = false) Long from,
+                                             @RequestParam(required = false) Long to) {
         try {
-            return ResponseEntity.ok(deadlockService.getResolutionHistory());
+            if (from != null || to != null) {
+                long start = from != null ? from : 0L;
+                long end = to != null ? to : Long.MAX_VALUE;
+                return ResponseEntity.ok(deadlockService.getJournalRange(start, end, size));
+            }
+            return ResponseEntity.ok(deadlockService.getResolutionHistory(page, size));
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error fetching deadlocks: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * ✅ Returns recent JFR contention events (newest first), optionally for one stream ("local" or a PID).
+     */
+    @GetMapping("/contention/events")
+    public ResponseEntity<?> getContentionEvents(@RequestParam(required = false) String stream,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(contentionMonitor.getRecentEvents(stream, limit));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error fetching contention events: " + e.getMessage());
+        }
+    }
+
+    /**
+     * ✅ Returns JFR stream state and event counters.
+     */
+    @GetMapping("/contention/stats")
+    public ResponseEntity<?> getContentionStats() {
+        try {
+            return ResponseEntity.ok(contentionMonitor.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error fetching contention stats: " + e.getMessage());
+        }
+    }
 
+    /**
+     * ✅ Captures a thread dump including virtual threads ("local" or a PID) and returns its blocking hotspots.
+     * With cached=true the last capture is returned instead of taking a new one.
+     */
+    @GetMapping("/threads/summary")
+    public ResponseEntity<?> getThreadDumpSummary(@RequestParam(defaultValue = SnapshotPublisher.LOCAL_STREAM) String stream,
+                                                  @RequestParam(defaultValue = "false") boolean cached) {
+        try {
+            ThreadDumpService.DumpSummary summary = cached ? threadDumpService.getLatest(stream) : threadDumpService.capture(stream);
+            if (summary == null) {
+                return ResponseEntity.status(404).body("No thread dump captured yet for " + stream);
+            }
+            return ResponseEntity.ok(summary);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error capturing thread dump: " + e.getMessage());
+        }
+    }
+}
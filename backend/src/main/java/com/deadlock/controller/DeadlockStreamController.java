@@ -0,0 +1,35 @@
+package com.deadlock.controller;
+
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import com.deadlock.model.DeadlockSnapshot;
+import com.deadlock.service.SnapshotPublisher;
+
+/**
+ * STOMP entry points for the delta stream on /topic/deadlock.
+ *
+ * A client subscribes to /app/deadlock/snapshot (or /app/deadlock/snapshot/{pid}) to receive the
+ * current full snapshot with its sequence number, then applies deltas from the topic. On a
+ * sequence gap it simply subscribes again to resync.
+ */
+@Controller
+public class DeadlockStreamController {
+
+    private final SnapshotPublisher snapshotPublisher;
+
+    public DeadlockStreamController(SnapshotPublisher snapshotPublisher) {
+        this.snapshotPublisher = snapshotPublisher;
+    }
+
+    @SubscribeMapping("/deadlock/snapshot")
+    public DeadlockSnapshot localSnapshot() {
+        return snapshotPublisher.current(SnapshotPublisher.LOCAL_STREAM);
+    }
+
+    @SubscribeMapping("/deadlock/snapshot/{pid}")
+    public DeadlockSnapshot processSnapshot(@DestinationVariable String pid) {
+        return snapshotPublisher.current(pid);
+    }
+}
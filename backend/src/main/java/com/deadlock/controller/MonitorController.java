@@ -1,6 +1,5 @@
 package com.deadlock.controller;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +14,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.deadlock.service.JMXProcessMonitor;
+import com.deadlock.service.ProcessRegistry;
+
 @RestController
 @RequestMapping("/api")
 public class MonitorController {
@@ -22,6 +24,12 @@ public class MonitorController {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     
+    @Autowired
+    private JMXProcessMonitor jmxMonitor;
+    
+    @Autowired
+    private ProcessRegistry processRegistry;
+    
     private String currentMonitoredPid = null;
     private String currentProcessName = null;
     
@@ -29,6 +37,7 @@ public class MonitorController {
     public Map<String, Object> selectProcess(@PathVariable String pid, @RequestParam(required = false) String name) {
         currentMonitoredPid = pid;
         currentProcessName = name != null ? name : "Process " + pid;
+        jmxMonitor.startMonitoring(pid);
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -56,18 +65,68 @@ public class MonitorController {
         return response;
     }
     
-    @GetMapping("/processes")
-    public List<Map<String, Object>> getProcessList() {
-        // Simulate process list - in real implementation, this would get actual Java processes
-        List<Map<String, Object>> processes = new ArrayList<>();
+    @PostMapping("/monitor/targets/{pid}")
+    public Map<String, Object> addTarget(@PathVariable String pid) {
+        jmxMonitor.startMonitoring(pid);
         
-        // Add some sample processes
-        addProcess(processes, "12345", "DeadlockTestApp", "java -cp test.jar DeadlockTestApp");
-        addProcess(processes, "67890", "SampleApplication", "java -jar sample-app.jar");
-        addProcess(processes, "11111", "TestDeadlock", "java TestDeadlock");
-        addProcess(processes, "22222", "MultiThreadApp", "java -Xmx512m MultiThreadApp");
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("pid", pid);
+        response.put("targets", jmxMonitor.getMonitoredPids());
+        return response;
+    }
+    
+    @DeleteMapping("/monitor/targets/{pid}")
+    public Map<String, Object> removeTarget(@PathVariable String pid) {
+        jmxMonitor.stopMonitoring(pid);
         
-        return processes;
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("pid", pid);
+        response.put("targets", jmxMonitor.getMonitoredPids());
+        return response;
+    }
+    
+    @GetMapping("/monitor/targets")
+    public List<Map<String, Object>> getTargets() {
+        return jmxMonitor.getPollStatus();
+    }
+    
+    @PostMapping("/monitor/targets/{pid}/agent")
+    public Map<String, Object> loadAgent(@PathVariable String pid) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("pid", pid);
+        try {
+            jmxMonitor.loadLockOrderAgent(pid);
+            response.put("success", true);
+            response.put("message", "Lock-order agent loaded into PID " + pid);
+        } catch (Exception e) {
+            System.err.println("❌ Could not load lock-order agent into PID " + pid + ": " + e.getMessage());
+            response.put("success", false);
+            response.put("message", e.getMessage());
+        }
+        return response;
+    }
+    
+    @GetMapping("/monitor/targets/{pid}/lock-order")
+    public Map<String, Object> getLockOrder(@PathVariable String pid) {
+        try {
+            return jmxMonitor.getLockOrderReport(pid);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("pid", pid);
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return response;
+        }
+    }
+    
+    /**
+     * Live JVMs on this host, served from the hsperfdata-backed registry
+     */
+    @GetMapping("/processes")
+    public List<Map<String, Object>> getProcessList() {
+        return processRegistry.getProcesses();
     }
     
     @DeleteMapping("/monitor/stop")
@@ -77,6 +136,9 @@ public class MonitorController {
         
         currentMonitoredPid = null;
         currentProcessName = null;
+        if (previousPid != null) {
+            jmxMonitor.stopMonitoring(previousPid);
+        }
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -91,16 +153,4 @@ public class MonitorController {
         
         return response;
     }
-    
-    private void addProcess(List<Map<String, Object>> processes, String pid, String name, String command) {
-        Map<String, Object> process = new HashMap<>();
-        process.put("pid", pid);
-        process.put("displayName", name);
-        process.put("name", name);
-        process.put("command", command);
-        process.put("status", "RUNNING");
-        process.put("cpuUsage", Math.random() * 20); // Simulated CPU usage
-        process.put("memoryUsage", Math.random() * 1024); // Simulated memory usage in MB
-        processes.add(process);
-    }
 }
\ No newline at end of file
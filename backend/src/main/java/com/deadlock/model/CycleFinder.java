@@ -0,0 +1,140 @@
+package com.deadlock.model;
+
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts deadlock cycles from the thread -> lock -> owner graph with Tarjan's
+ * strongly-connected-components algorithm.
+ *
+ * Each thread waits on at most one lock, so the graph is collapsed to one successor per thread
+ * (the owner of the lock it waits on). The pass is iterative, linear in the number of threads and
+ * works on primitive arrays only. Every cycle is returned as thread ids in wait order, starting
+ * from the smallest id, so independent deadlocks can be told apart.
+ */
+public final class CycleFinder {
+
+    private CycleFinder() {}
+
+    /**
+     * Cycles among the given threads, using {@link ThreadInfo#getLockOwnerId()} as the edge.
+     */
+    public static List<List<Long>> findCycles(ThreadInfo[] infos) {
+        if (infos == null || infos.length == 0) {
+            return new ArrayList<>();
+        }
+        int n = 0;
+        long[] threadIds = new long[infos.length];
+        long[] ownerIds = new long[infos.length];
+        for (ThreadInfo info : infos) {
+            if (info == null) continue;
+            threadIds[n] = info.getThreadId();
+            ownerIds[n] = info.getLockOwnerId();
+            n++;
+        }
+        return findCycles(threadIds, ownerIds, n);
+    }
+
+    /**
+     * Cycles in a graph given as parallel arrays: {@code ownerIds[i]} is the owner of the lock
+     * {@code threadIds[i]} waits on, or -1. Owners outside {@code threadIds} end the chain.
+     */
+    public static List<List<Long>> findCycles(long[] threadIds, long[] ownerIds, int n) {
+        // a thread that waits on nothing is a sink and can never be on a cycle, so only waiters
+        // are indexed; an owner missing from the index simply ends the chain
+        int waiters = 0;
+        for (int i = 0; i < n; i++) {
+            if (ownerIds[i] >= 0) waiters++;
+        }
+        long[] ids = new long[waiters];
+        long[] owners = new long[waiters];
+        LongLongMap indexOf = new LongLongMap(waiters);
+        for (int i = 0, w = 0; i < n; i++) {
+            if (ownerIds[i] < 0) continue;
+            ids[w] = threadIds[i];
+            owners[w] = ownerIds[i];
+            indexOf.put(threadIds[i], w++);
+        }
+        int[] successor = new int[waiters];
+        for (int i = 0; i < waiters; i++) {
+            successor[i] = (int) indexOf.get(owners[i]);
+        }
+        return findCycles(ids, successor, waiters);
+    }
+
+    /**
+     * Tarjan over an index graph where {@code successor[i]} is the index of the single
+     * successor of node i, or -1.
+     */
+    static List<List<Long>> findCycles(long[] threadIds, int[] successor, int n) {
+        List<List<Long>> cycles = new ArrayList<>();
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] sccStack = new int[n];
+        int[] callStack = new int[n];
+        int sccTop = 0;
+        int nextIndex = 1; // 0 marks "unvisited"
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != 0) continue;
+
+            int callTop = 0;
+            callStack[callTop++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                int w = successor[v];
+                if (w >= 0 && index[w] == 0) {
+                    // descend; with a single successor each node is expanded exactly once
+                    index[w] = lowLink[w] = nextIndex++;
+                    sccStack[sccTop++] = w;
+                    onStack[w] = true;
+                    callStack[callTop++] = w;
+                    continue;
+                }
+                if (w >= 0 && onStack[w]) {
+                    lowLink[v] = Math.min(lowLink[v], index[w]);
+                }
+
+                callTop--;
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+
+                if (lowLink[v] == index[v]) {
+                    int start = sccTop;
+                    do {
+                        start--;
+                        onStack[sccStack[start]] = false;
+                    } while (sccStack[start] != v);
+                    int size = sccTop - start;
+                    if (size > 1 || successor[v] == v) {
+                        cycles.add(orderedCycle(threadIds, successor, sccStack, start, sccTop));
+                    }
+                    sccTop = start;
+                }
+            }
+        }
+        return cycles;
+    }
+
+    private static List<Long> orderedCycle(long[] threadIds, int[] successor, int[] members, int from, int to) {
+        int first = members[from];
+        for (int i = from + 1; i < to; i++) {
+            if (threadIds[members[i]] < threadIds[first]) first = members[i];
+        }
+        List<Long> cycle = new ArrayList<>(to - from);
+        int node = first;
+        do {
+            cycle.add(threadIds[node]);
+            node = successor[node];
+        } while (node != first);
+        return cycle;
+    }
+}
@@ -1,13 +1,14 @@
 package com.deadlock.model;
 
+import java.lang.management.LockInfo;
 import java.lang.management.ThreadInfo;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -16,6 +17,16 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  */
 public class DeadlockSnapshot {
     
+    private static final String MONITOR = "MONITOR";
+    private static final String WAITING = "WAITING";
+    private static final String HOLDING = "HOLDING";
+    
+    @JsonProperty("type")
+    private final String type = "SNAPSHOT";
+    
+    @JsonProperty("sequence")
+    private long sequence;
+    
     @JsonProperty("timestamp")
     private long timestamp;
     
@@ -25,6 +36,11 @@ public class DeadlockSnapshot {
     @JsonProperty("threads")
     private List<ThreadData> threads;
     
+    // Aggregate nodes for threads folded away by ThreadCondenser; empty for small populations
+    @JsonProperty("threadGroups")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<ThreadGroupData> threadGroups;
+    
     @JsonProperty("locks")
     private List<LockData> locks;
     
@@ -36,10 +52,20 @@ public class DeadlockSnapshot {
     
     @JsonProperty("additionalData")
     private Map<String, Object> additionalData;
+    
+    // Text for every frame id referenced by this snapshot; only filled on full snapshots sent to clients
+    @JsonProperty("frameTable")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<Integer, String> frameTable;
+    
+    // Order-independent hash over (thread id, state, lock waited on), accumulated while building
+    @JsonIgnore
+    private long structuralHash;
 
     public DeadlockSnapshot() {
         this.timestamp = System.currentTimeMillis();
         this.threads = new ArrayList<>();
+        this.threadGroups = new ArrayList<>();
         this.locks = new ArrayList<>();
         this.edges = new ArrayList<>();
         this.deadlockCycles = new ArrayList<>();
@@ -47,7 +73,12 @@ public class DeadlockSnapshot {
     }
 
     /**
-     * Creates a DeadlockSnapshot from ThreadInfo array (from ThreadMXBean)
+     * Creates a DeadlockSnapshot from ThreadInfo array (from ThreadMXBean).
+     *
+     * One pass over the threads: the lock each thread waits on, its owner ({@code getLockOwnerId()}),
+     * and the monitors and ownable synchronizers each thread holds all resolve through one
+     * lock index keyed by (class, identity hash), so every lock node and its id string are
+     * built once however many threads reference it.
      */
     public static DeadlockSnapshot from(ThreadInfo[] threadInfos) {
         DeadlockSnapshot snapshot = new DeadlockSnapshot();
@@ -58,71 +89,203 @@ public class DeadlockSnapshot {
         }
         
         snapshot.deadlockDetected = true;
-        Set<String> processedLocks = new HashSet<>();
+        LongLongMap lockIndex = new LongLongMap(threadInfos.length * 2);
+        LongLongMap holdingEdges = new LongLongMap(threadInfos.length * 2);
         
-        // Process each deadlocked thread
         for (ThreadInfo info : threadInfos) {
             if (info == null) continue;
+            long threadId = info.getThreadId();
+            String threadNode = String.valueOf(threadId);
             
             // Add thread data
             ThreadData thread = new ThreadData();
-            thread.id = info.getThreadId();
+            thread.id = threadId;
             thread.name = info.getThreadName();
             thread.state = info.getThreadState().toString();
             thread.isDeadlocked = true;
             snapshot.threads.add(thread);
+            snapshot.mixThread(info);
             
-            // Process locks this thread is waiting for
-            if (info.getLockInfo() != null) {
-                String lockId = info.getLockInfo().getClassName() + "@" + 
-                               Integer.toHexString(info.getLockInfo().getIdentityHashCode());
-                
-                if (!processedLocks.contains(lockId)) {
-                    LockData lock = new LockData();
-                    lock.id = lockId;
-                    lock.className = info.getLockInfo().getClassName();
-                    lock.type = "MONITOR";
-                    snapshot.locks.add(lock);
-                    processedLocks.add(lockId);
+            // Lock this thread is waiting for, and who owns it
+            LockInfo waitingFor = info.getLockInfo();
+            if (waitingFor != null) {
+                String waitedType = info.getThreadState() == Thread.State.BLOCKED ? MONITOR : waitedLockType(waitingFor.getClassName());
+                int lock = snapshot.lockNode(lockIndex, waitingFor, waitedType);
+                snapshot.addEdge(threadNode, snapshot.locks.get(lock).id, WAITING);
+                if (info.getLockOwnerId() >= 0) {
+                    snapshot.addHolding(holdingEdges, lock, info.getLockOwnerId());
                 }
-                
-                // Add waiting edge
-                EdgeData waitingEdge = new EdgeData();
-                waitingEdge.from = String.valueOf(info.getThreadId());
-                waitingEdge.to = lockId;
-                waitingEdge.type = "WAITING";
-                snapshot.edges.add(waitingEdge);
             }
             
-            // Process locks this thread owns
-            if (info.getLockedMonitors() != null) {
-                for (var monitor : info.getLockedMonitors()) {
-                    String lockId = monitor.getClassName() + "@" + 
-                                   Integer.toHexString(monitor.getIdentityHashCode());
-                    
-                    if (!processedLocks.contains(lockId)) {
-                        LockData lock = new LockData();
-                        lock.id = lockId;
-                        lock.className = monitor.getClassName();
-                        lock.type = "MONITOR";
-                        snapshot.locks.add(lock);
-                        processedLocks.add(lockId);
-                    }
-                    
-                    // Add holding edge
-                    EdgeData holdingEdge = new EdgeData();
-                    holdingEdge.from = lockId;
-                    holdingEdge.to = String.valueOf(info.getThreadId());
-                    holdingEdge.type = "HOLDING";
-                    snapshot.edges.add(holdingEdge);
-                }
+            // Monitors and ownable synchronizers this thread holds
+            for (LockInfo monitor : info.getLockedMonitors()) {
+                snapshot.addHolding(holdingEdges, snapshot.lockNode(lockIndex, monitor, MONITOR), threadId);
+            }
+            for (LockInfo synchronizer : info.getLockedSynchronizers()) {
+                snapshot.addHolding(holdingEdges, snapshot.lockNode(lockIndex, synchronizer, synchronizerType(synchronizer.getClassName())), threadId);
             }
         }
         
+        snapshot.deadlockCycles = CycleFinder.findCycles(threadInfos);
         return snapshot;
     }
 
+    /**
+     * Lock nodes, WAITING/HOLDING edges and deadlock cycles taken from the persistent wait-for
+     * graph instead of being recomputed from the dump. Only waiters already in this snapshot
+     * are drawn, so condensed threads and waiters the graph still remembers from an earlier
+     * population add nothing. Held locks nobody waits on are not in the graph and not drawn.
+     */
+    public void addWaitGraph(WaitForGraph graph) {
+        Map<Long, ThreadData> present = new HashMap<>(threads.size() * 2);
+        for (ThreadData thread : threads) {
+            present.put(thread.id, thread);
+        }
+        long[] waits = graph.waits();
+        LongLongMap lockIndex = new LongLongMap(waits.length / WaitForGraph.WAIT_RECORD * 2 + 1);
+        LongLongMap holdingEdges = new LongLongMap(waits.length / WaitForGraph.WAIT_RECORD * 2 + 1);
+        for (int at = 0; at < waits.length; at += WaitForGraph.WAIT_RECORD) {
+            ThreadData waiter = present.get(waits[at]);
+            if (waiter == null) continue;
+            int lockHash = (int) waits[at + 1];
+            long owner = waits[at + 2];
+            String className = graph.lockClassName(lockHash);
+            if (className == null) className = "java.lang.Object"; // agent records carry no class
+            String type = Thread.State.BLOCKED.name().equals(waiter.state) ? MONITOR : waitedLockType(className);
+            int lock = lockNode(lockIndex, className, lockHash, type);
+            addEdge(String.valueOf(waiter.id), locks.get(lock).id, WAITING);
+            if (owner >= 0) {
+                addHolding(holdingEdges, lock, owner);
+            }
+        }
+        List<List<Long>> cycles = new ArrayList<>();
+        for (long[] members : graph.getCycles()) {
+            List<Long> cycle = new ArrayList<>(members.length);
+            for (long member : members) {
+                cycle.add(member);
+            }
+            if (present.keySet().containsAll(cycle)) {
+                cycles.add(cycle);
+            }
+        }
+        deadlockCycles = cycles;
+    }
+
+    /**
+     * Index of the node for a lock, created on first sight. A lock first seen as the target of
+     * a wait gets its type refined once it shows up among a thread's held synchronizers.
+     */
+    private int lockNode(LongLongMap lockIndex, LockInfo lockInfo, String type) {
+        return lockNode(lockIndex, lockInfo.getClassName(), lockInfo.getIdentityHashCode(), type);
+    }
+
+    private int lockNode(LongLongMap lockIndex, String className, int identityHash, String type) {
+        long key = ((long) className.hashCode() << 32) | (identityHash & 0xFFFFFFFFL);
+        long index = lockIndex.getOrDefault(key, -1);
+        if (index >= 0) {
+            LockData existing = locks.get((int) index);
+            if (!MONITOR.equals(type)) existing.type = type;
+            return (int) index;
+        }
+        LockData lock = new LockData();
+        lock.id = className + "@" + Integer.toHexString(identityHash);
+        lock.className = className;
+        lock.type = type;
+        locks.add(lock);
+        lockIndex.put(key, locks.size() - 1);
+        return locks.size() - 1;
+    }
+
+    private void addHolding(LongLongMap holdingEdges, int lock, long threadId) {
+        long key = ((long) lock << 40) ^ threadId;
+        if (holdingEdges.getOrDefault(key, -1) >= 0) {
+            return; // already known from the owner id or the held list of another thread
+        }
+        holdingEdges.put(key, 1);
+        addEdge(locks.get(lock).id, String.valueOf(threadId), HOLDING);
+    }
+
+    private void addEdge(String from, String to, String type) {
+        EdgeData edge = new EdgeData();
+        edge.from = from;
+        edge.to = to;
+        edge.type = type;
+        edges.add(edge);
+    }
+
+    /**
+     * Type of a lock a non-BLOCKED thread waits on: a parked thread waits on an ownable
+     * synchronizer, a thread in Object.wait() on a monitor.
+     */
+    private static String waitedLockType(String className) {
+        String type = synchronizerType(className);
+        if (!"SYNCHRONIZER".equals(type)) return type;
+        return className.endsWith("Sync") ? type : MONITOR;
+    }
+
+    private static String synchronizerType(String className) {
+        if (className.startsWith("java.util.concurrent.locks.ReentrantReadWriteLock")) return "READ_WRITE_LOCK";
+        if (className.startsWith("java.util.concurrent.locks.ReentrantLock")) return "REENTRANT_LOCK";
+        if (className.endsWith("ConditionObject")) return "CONDITION";
+        if (className.startsWith("java.util.concurrent.Semaphore")) return "SEMAPHORE";
+        return "SYNCHRONIZER";
+    }
+
+    /**
+     * Shallow copy: shares the thread, group, lock and edge lists, but sequence and frame table can
+     * be set on it without touching the original, which other readers may still hold.
+     */
+    public DeadlockSnapshot copy() {
+        DeadlockSnapshot c = new DeadlockSnapshot();
+        c.sequence = sequence;
+        c.timestamp = timestamp;
+        c.deadlockDetected = deadlockDetected;
+        c.threads = threads;
+        c.threadGroups = threadGroups;
+        c.locks = locks;
+        c.edges = edges;
+        c.deadlockCycles = deadlockCycles;
+        c.additionalData = additionalData;
+        c.frameTable = frameTable;
+        c.structuralHash = structuralHash;
+        return c;
+    }
+
+    /**
+     * Fold one thread into the structural hash. Call once per thread while building the snapshot.
+     */
+    public void mixThread(ThreadInfo info) {
+        LockInfo lock = info.getLockInfo();
+        mixThread(info.getThreadId(), info.getThreadState(), lock != null, lock == null ? 0 : lock.getIdentityHashCode());
+    }
+    
+    /**
+     * {@link #mixThread(ThreadInfo)} from decoded fields, for samples that never built a ThreadInfo.
+     */
+    public void mixThread(long threadId, Thread.State state, boolean waiting, int lockHash) {
+        long h = threadId * 0x9E3779B97F4A7C15L
+                ^ (state.ordinal() + 1) * 0xC2B2AE3D27D4EB4FL
+                ^ (waiting ? lockHash + 1L : 0) * 0x165667B19E3779F9L;
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        structuralHash += h; // addition keeps the hash independent of thread order
+    }
+    
+    /**
+     * Equal hashes mean the same threads in the same states waiting on the same locks.
+     */
+    @JsonIgnore
+    public long getStructuralHash() {
+        return deadlockDetected ? ~structuralHash : structuralHash;
+    }
+    
     // Getters and Setters
+    public String getType() { return type; }
+    
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+    
     public long getTimestamp() { return timestamp; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     
@@ -132,6 +295,9 @@ public class DeadlockSnapshot {
     public List<ThreadData> getThreads() { return threads; }
     public void setThreads(List<ThreadData> threads) { this.threads = threads; }
     
+    public List<ThreadGroupData> getThreadGroups() { return threadGroups; }
+    public void setThreadGroups(List<ThreadGroupData> threadGroups) { this.threadGroups = threadGroups; }
+    
     public List<LockData> getLocks() { return locks; }
     public void setLocks(List<LockData> locks) { this.locks = locks; }
     
@@ -143,6 +309,9 @@ public class DeadlockSnapshot {
     
     public Map<String, Object> getAdditionalData() { return additionalData; }
     public void setAdditionalData(Map<String, Object> additionalData) { this.additionalData = additionalData; }
+    
+    public Map<Integer, String> getFrameTable() { return frameTable; }
+    public void setFrameTable(Map<Integer, String> frameTable) { this.frameTable = frameTable; }
 
     /**
      * Represents a thread in the deadlock graph
@@ -160,8 +329,31 @@ public class DeadlockSnapshot {
         @JsonProperty("isDeadlocked")
         public boolean isDeadlocked;
         
-        @JsonProperty("stackTrace")
-        public List<String> stackTrace = new ArrayList<>();
+        // top stack frames as ids into the frame table (see FrameDictionary); replaces the former
+        // "stackTrace" strings: resolve ids through "frameTable" (full snapshots) or "newFrames" (deltas)
+        @JsonProperty("frames")
+        public int[] frames = new int[0];
+    }
+
+    /**
+     * Threads sharing a name pattern and state, shown as one node with a count
+     */
+    public static class ThreadGroupData {
+        @JsonProperty("id")
+        public String id; // pattern + "|" + state
+        
+        @JsonProperty("pattern")
+        public String pattern; // e.g. pool-3-thread-*
+        
+        @JsonProperty("state")
+        public String state;
+        
+        @JsonProperty("count")
+        public int count;
+        
+        // served page by page through /api/state/groups, never broadcast
+        @JsonIgnore
+        public List<ThreadData> members = new ArrayList<>();
     }
 
     /**
@@ -175,7 +367,7 @@ public class DeadlockSnapshot {
         public String className;
         
         @JsonProperty("type")
-        public String type; // MONITOR, REENTRANT_LOCK, etc.
+        public String type; // MONITOR, REENTRANT_LOCK, READ_WRITE_LOCK, CONDITION, SEMAPHORE, SYNCHRONIZER
     }
 
     /**
@@ -0,0 +1,180 @@
+package com.deadlock.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Patch between two consecutive published snapshots of the same stream.
+ * A client holding the snapshot with {@code baseSequence} applies it to reach {@code sequence};
+ * on any other base it must request a resync.
+ */
+public class SnapshotDelta {
+
+    @JsonProperty("type")
+    private final String type = "DELTA";
+
+    @JsonProperty("sequence")
+    private long sequence;
+
+    @JsonProperty("baseSequence")
+    private long baseSequence;
+
+    @JsonProperty("timestamp")
+    private long timestamp;
+
+    @JsonProperty("deadlockDetected")
+    private boolean deadlockDetected;
+
+    @JsonProperty("addedThreads")
+    private List<DeadlockSnapshot.ThreadData> addedThreads = new ArrayList<>();
+
+    @JsonProperty("changedThreads")
+    private List<DeadlockSnapshot.ThreadData> changedThreads = new ArrayList<>();
+
+    @JsonProperty("removedThreads")
+    private List<Long> removedThreads = new ArrayList<>();
+
+    // all thread groups of the new snapshot, replacing the client's; null when no group or count changed
+    @JsonProperty("threadGroups")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<DeadlockSnapshot.ThreadGroupData> threadGroups;
+
+    @JsonProperty("addedLocks")
+    private List<DeadlockSnapshot.LockData> addedLocks = new ArrayList<>();
+
+    @JsonProperty("removedLocks")
+    private List<String> removedLocks = new ArrayList<>();
+
+    @JsonProperty("addedEdges")
+    private List<DeadlockSnapshot.EdgeData> addedEdges = new ArrayList<>();
+
+    @JsonProperty("removedEdges")
+    private List<DeadlockSnapshot.EdgeData> removedEdges = new ArrayList<>();
+
+    @JsonProperty("deadlockCycles")
+    private List<List<Long>> deadlockCycles;
+
+    @JsonProperty("additionalData")
+    private Map<String, Object> additionalData;
+
+    // frame table entries interned since the previous message on this stream
+    @JsonProperty("newFrames")
+    private Map<Integer, String> newFrames;
+
+    /**
+     * Compute the patch that turns {@code base} into {@code next}.
+     */
+    public static SnapshotDelta between(DeadlockSnapshot base, DeadlockSnapshot next) {
+        SnapshotDelta delta = new SnapshotDelta();
+        delta.baseSequence = base.getSequence();
+        delta.sequence = next.getSequence();
+        delta.timestamp = next.getTimestamp();
+        delta.deadlockDetected = next.isDeadlockDetected();
+        delta.deadlockCycles = next.getDeadlockCycles();
+        delta.additionalData = next.getAdditionalData();
+
+        Map<Long, DeadlockSnapshot.ThreadData> oldThreads = new HashMap<>();
+        for (DeadlockSnapshot.ThreadData t : base.getThreads()) {
+            oldThreads.put(t.id, t);
+        }
+        for (DeadlockSnapshot.ThreadData t : next.getThreads()) {
+            DeadlockSnapshot.ThreadData old = oldThreads.remove(t.id);
+            if (old == null) {
+                delta.addedThreads.add(t);
+            } else if (!sameThread(old, t)) {
+                delta.changedThreads.add(t);
+            }
+        }
+        delta.removedThreads.addAll(oldThreads.keySet());
+
+        if (!groupCounts(base).equals(groupCounts(next))) {
+            delta.threadGroups = next.getThreadGroups();
+        }
+
+        Map<String, DeadlockSnapshot.LockData> oldLocks = new HashMap<>();
+        for (DeadlockSnapshot.LockData l : base.getLocks()) {
+            oldLocks.put(l.id, l);
+        }
+        for (DeadlockSnapshot.LockData l : next.getLocks()) {
+            if (oldLocks.remove(l.id) == null) {
+                delta.addedLocks.add(l);
+            }
+        }
+        delta.removedLocks.addAll(oldLocks.keySet());
+
+        Map<String, DeadlockSnapshot.EdgeData> oldEdges = new HashMap<>();
+        for (DeadlockSnapshot.EdgeData e : base.getEdges()) {
+            oldEdges.put(edgeKey(e), e);
+        }
+        for (DeadlockSnapshot.EdgeData e : next.getEdges()) {
+            if (oldEdges.remove(edgeKey(e)) == null) {
+                delta.addedEdges.add(e);
+            }
+        }
+        delta.removedEdges.addAll(oldEdges.values());
+
+        return delta;
+    }
+
+    private static boolean sameThread(DeadlockSnapshot.ThreadData a, DeadlockSnapshot.ThreadData b) {
+        return a.isDeadlocked == b.isDeadlocked
+                && Objects.equals(a.state, b.state)
+                && Objects.equals(a.name, b.name)
+                && Arrays.equals(a.frames, b.frames);
+    }
+
+    private static Map<String, Integer> groupCounts(DeadlockSnapshot snapshot) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (DeadlockSnapshot.ThreadGroupData g : snapshot.getThreadGroups()) {
+            counts.put(g.id, g.count);
+        }
+        return counts;
+    }
+
+    private static String edgeKey(DeadlockSnapshot.EdgeData e) {
+        return e.type + ':' + e.from + "->" + e.to;
+    }
+
+    /**
+     * True when applying this delta would change nothing a client renders.
+     */
+    public boolean isEmpty() {
+        return addedThreads.isEmpty() && changedThreads.isEmpty() && removedThreads.isEmpty()
+                && threadGroups == null
+                && addedLocks.isEmpty() && removedLocks.isEmpty()
+                && addedEdges.isEmpty() && removedEdges.isEmpty();
+    }
+
+    public String getType() { return type; }
+
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+
+    public long getBaseSequence() { return baseSequence; }
+    public void setBaseSequence(long baseSequence) { this.baseSequence = baseSequence; }
+
+    public long getTimestamp() { return timestamp; }
+
+    public boolean isDeadlockDetected() { return deadlockDetected; }
+
+    public List<DeadlockSnapshot.ThreadData> getAddedThreads() { return addedThreads; }
+    public List<DeadlockSnapshot.ThreadData> getChangedThreads() { return changedThreads; }
+    public List<Long> getRemovedThreads() { return removedThreads; }
+    public List<DeadlockSnapshot.ThreadGroupData> getThreadGroups() { return threadGroups; }
+    public List<DeadlockSnapshot.LockData> getAddedLocks() { return addedLocks; }
+    public List<String> getRemovedLocks() { return removedLocks; }
+    public List<DeadlockSnapshot.EdgeData> getAddedEdges() { return addedEdges; }
+    public List<DeadlockSnapshot.EdgeData> getRemovedEdges() { return removedEdges; }
+    public List<List<Long>> getDeadlockCycles() { return deadlockCycles; }
+    public Map<String, Object> getAdditionalData() { return additionalData; }
+
+    public Map<Integer, String> getNewFrames() { return newFrames; }
+    public void setNewFrames(Map<Integer, String> newFrames) { this.newFrames = newFrames; }
+}
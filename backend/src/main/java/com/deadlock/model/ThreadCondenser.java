@@ -0,0 +1,92 @@
+package com.deadlock.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Folds the thread nodes of a large snapshot into aggregate nodes by pool-name pattern and state.
+ *
+ * The pattern of a name is the name with its last run of digits replaced by {@code *}, so
+ * {@code pool-3-thread-17} joins {@code pool-3-thread-*} and {@code http-nio-8080-exec-4} joins
+ * {@code http-nio-8080-exec-*}. Threads on a wait path (waiting on an owned lock, or owning one
+ * somebody waits on) and deadlocked threads always stay individual nodes, as do groups too small
+ * to be worth folding. Group members are kept on the snapshot for paginated expansion but never
+ * serialized with it.
+ */
+public final class ThreadCondenser {
+
+    private ThreadCondenser() {}
+
+    /**
+     * Condense {@code snapshot} in place when it has more than {@code threshold} thread nodes.
+     *
+     * @param keep ids of threads that must stay individual nodes
+     * @param minGroupSize smallest group folded into an aggregate node
+     * @return number of threads folded into groups
+     */
+    public static int condense(DeadlockSnapshot snapshot, Set<Long> keep, int threshold, int minGroupSize) {
+        List<DeadlockSnapshot.ThreadData> threads = snapshot.getThreads();
+        if (threshold < 0 || threads.size() <= threshold) {
+            return 0;
+        }
+        Map<String, Integer> sizes = new HashMap<>();
+        for (DeadlockSnapshot.ThreadData t : threads) {
+            if (t.isDeadlocked || keep.contains(t.id)) continue;
+            sizes.merge(groupId(patternOf(t.name), t.state), 1, Integer::sum);
+        }
+
+        List<DeadlockSnapshot.ThreadData> individual = new ArrayList<>();
+        Map<String, DeadlockSnapshot.ThreadGroupData> groups = new LinkedHashMap<>();
+        int folded = 0;
+        for (DeadlockSnapshot.ThreadData t : threads) {
+            if (t.isDeadlocked || keep.contains(t.id)) {
+                individual.add(t);
+                continue;
+            }
+            String pattern = patternOf(t.name);
+            String id = groupId(pattern, t.state);
+            if (sizes.get(id) < minGroupSize) {
+                individual.add(t);
+                continue;
+            }
+            DeadlockSnapshot.ThreadGroupData group = groups.computeIfAbsent(id, k -> {
+                DeadlockSnapshot.ThreadGroupData g = new DeadlockSnapshot.ThreadGroupData();
+                g.id = k;
+                g.pattern = pattern;
+                g.state = t.state;
+                return g;
+            });
+            group.members.add(t);
+            group.count++;
+            folded++;
+        }
+        snapshot.setThreads(individual);
+        snapshot.getThreadGroups().addAll(groups.values());
+        return folded;
+    }
+
+    /**
+     * Name with its last run of digits replaced by {@code *}; names without digits are their own pattern.
+     */
+    public static String patternOf(String name) {
+        if (name == null || name.isEmpty()) {
+            return "<unnamed>";
+        }
+        int end = name.length();
+        while (end > 0 && !Character.isDigit(name.charAt(end - 1))) end--;
+        if (end == 0) {
+            return name;
+        }
+        int start = end;
+        while (start > 0 && Character.isDigit(name.charAt(start - 1))) start--;
+        return name.substring(0, start) + '*' + name.substring(end);
+    }
+
+    public static String groupId(String pattern, String state) {
+        return pattern + '|' + state;
+    }
+}
@@ -0,0 +1,148 @@
+package com.deadlock.model;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Thread sample of a remote JVM decoded straight from the {@code CompositeData[]} the Threading
+ * MBean returns, as parallel arrays.
+ *
+ * Only the fields the detector uses are read (id, name, state, lock identity and class, owner,
+ * blocked count and time, optionally the top frames); no {@code ThreadInfo}, {@code LockInfo} or
+ * {@code MonitorInfo} objects are built. The sample is requested with a small {@code maxDepth}, so
+ * the remote side does not serialize full stacks either.
+ */
+public class ThreadSample {
+
+    private static final Thread.State[] STATES = Thread.State.values();
+    private static final StackTraceElement[] NO_FRAMES = new StackTraceElement[0];
+
+    private int size;
+    private final long[] ids;
+    private final String[] names;
+    private final byte[] states;
+    private final int[] lockHashes;
+    private final String[] lockClasses;
+    private final long[] owners;
+    private final long[] blockedCounts;
+    private final long[] blockedTimes;
+    private final StackTraceElement[][] frames;
+
+    private ThreadSample(int capacity, boolean withFrames) {
+        ids = new long[capacity];
+        names = new String[capacity];
+        states = new byte[capacity];
+        lockHashes = new int[capacity];
+        lockClasses = new String[capacity];
+        owners = new long[capacity];
+        blockedCounts = new long[capacity];
+        blockedTimes = new long[capacity];
+        frames = withFrames ? new StackTraceElement[capacity][] : null;
+    }
+
+    /**
+     * Decode the result of {@code ThreadMXBean.getThreadInfo(long[], int)} invoked through an
+     * {@code MBeanServerConnection}. Null entries (threads that died in between) are skipped.
+     *
+     * @param maxFrames frames to keep per thread, 0 for none
+     */
+    public static ThreadSample decode(CompositeData[] data, int maxFrames) {
+        ThreadSample sample = new ThreadSample(data.length, maxFrames > 0);
+        int n = 0;
+        for (CompositeData cd : data) {
+            if (cd == null) continue;
+            sample.ids[n] = (Long) cd.get("threadId");
+            sample.names[n] = (String) cd.get("threadName");
+            sample.states[n] = (byte) Thread.State.valueOf((String) cd.get("threadState")).ordinal();
+            CompositeData lock = (CompositeData) cd.get("lockInfo");
+            if (lock != null) {
+                sample.lockClasses[n] = (String) lock.get("className");
+                sample.lockHashes[n] = (Integer) lock.get("identityHashCode");
+            }
+            sample.owners[n] = (Long) cd.get("lockOwnerId");
+            sample.blockedCounts[n] = (Long) cd.get("blockedCount");
+            sample.blockedTimes[n] = (Long) cd.get("blockedTime");
+            if (maxFrames > 0) {
+                sample.frames[n] = decodeFrames((CompositeData[]) cd.get("stackTrace"), maxFrames);
+            }
+            n++;
+        }
+        sample.size = n;
+        return sample;
+    }
+
+    private static StackTraceElement[] decodeFrames(CompositeData[] stack, int maxFrames) {
+        int depth = stack == null ? 0 : Math.min(stack.length, maxFrames);
+        StackTraceElement[] result = new StackTraceElement[depth];
+        for (int i = 0; i < depth; i++) {
+            CompositeData f = stack[i];
+            result[i] = new StackTraceElement((String) f.get("className"), (String) f.get("methodName"),
+                    (String) f.get("fileName"), (Integer) f.get("lineNumber"));
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int i) {
+        return ids[i];
+    }
+
+    public String name(int i) {
+        return names[i];
+    }
+
+    public Thread.State state(int i) {
+        return STATES[states[i]];
+    }
+
+    /** Whether the thread waits on a lock (monitor, synchronizer or condition). */
+    public boolean isWaiting(int i) {
+        return lockClasses[i] != null;
+    }
+
+    public int lockHash(int i) {
+        return lockHashes[i];
+    }
+
+    public String lockClass(int i) {
+        return lockClasses[i];
+    }
+
+    /** Owner of the lock the thread waits on, or -1. */
+    public long owner(int i) {
+        return owners[i];
+    }
+
+    /** Top frames, or an empty array when the sample was taken without frames. */
+    public StackTraceElement[] frames(int i) {
+        return frames == null || frames[i] == null ? NO_FRAMES : frames[i];
+    }
+
+    public int blockedThreads() {
+        int blocked = 0;
+        for (int i = 0; i < size; i++) {
+            if (states[i] == Thread.State.BLOCKED.ordinal()) blocked++;
+        }
+        return blocked;
+    }
+
+    public long totalBlockedCount() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += blockedCounts[i];
+        }
+        return total;
+    }
+
+    /** Summed blocked time, or -1 when contention monitoring is disabled in the target. */
+    public long totalBlockedTime() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            if (blockedTimes[i] < 0) return -1;
+            total += blockedTimes[i];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,357 @@
+package com.deadlock.model;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent wait-for graph maintained across polls.
+ *
+ * Threads are keyed by their primitive id and locks by their identity hash code. Only threads
+ * that are waiting on a lock (and the owners of those locks) are stored, so a JVM with 10k idle
+ * threads costs nothing here. Every update applies just the difference from the previous state,
+ * and cycle membership is kept up to date on each edge change by walking the single outgoing
+ * thread -> lock -> owner chain, so upkeep costs O(changes) rather than O(threads).
+ */
+public class WaitForGraph {
+
+    public static final long NONE = -1L;
+    /** Longs per record returned by {@link #waits()}. */
+    public static final int WAIT_RECORD = 3;
+
+    // thread id -> identity hash of the lock it waits on
+    private final LongLongMap waitingOn = new LongLongMap();
+    // lock identity hash -> owning thread id (only kept while somebody waits on the lock)
+    private final LongLongMap lockOwner = new LongLongMap();
+    // lock identity hash -> number of waiting threads
+    private final LongLongMap lockWaiters = new LongLongMap();
+    // thread id -> epoch of the last full population it appeared in
+    private final LongLongMap lastSeen = new LongLongMap();
+    // thread id -> id of the cycle it belongs to
+    private final LongLongMap cycleOf = new LongLongMap();
+    private final Map<Long, long[]> cycles = new HashMap<>();
+    private final Map<Long, String> lockClassNames = new HashMap<>();
+
+    private long epoch;
+    private long version;
+    private long nextCycleId;
+    private int lastChangeCount;
+
+    /**
+     * Apply a ThreadMXBean dump. When {@code completePopulation} is true the dump covers every
+     * live thread, so waiters missing from it are treated as dead and dropped.
+     *
+     * @return number of edge changes applied
+     */
+    public synchronized int apply(ThreadInfo[] infos, boolean completePopulation) {
+        long before = version;
+        epoch++;
+        if (infos != null) {
+            for (ThreadInfo info : infos) {
+                if (info == null) continue;
+                long tid = info.getThreadId();
+                LockInfo lock = info.getLockInfo();
+                if (lock == null) {
+                    removeWait(tid);
+                    continue;
+                }
+                addWait(tid, lock.getIdentityHashCode(), info.getLockOwnerId());
+                lastSeen.put(tid, epoch);
+                lockClassNames.putIfAbsent((long) lock.getIdentityHashCode(), lock.getClassName());
+            }
+        }
+        if (completePopulation) {
+            sweepUnseen();
+        }
+        lastChangeCount = (int) (version - before);
+        return lastChangeCount;
+    }
+
+    /**
+     * Apply a complete remote thread sample; same semantics as a complete {@link #apply}.
+     *
+     * @return number of edge changes applied
+     */
+    public synchronized int apply(ThreadSample sample) {
+        long before = version;
+        epoch++;
+        for (int i = 0; i < sample.size(); i++) {
+            long tid = sample.id(i);
+            if (!sample.isWaiting(i)) {
+                removeWait(tid);
+                continue;
+            }
+            addWait(tid, sample.lockHash(i), sample.owner(i));
+            lastSeen.put(tid, epoch);
+            lockClassNames.putIfAbsent((long) sample.lockHash(i), sample.lockClass(i));
+        }
+        sweepUnseen();
+        lastChangeCount = (int) (version - before);
+        return lastChangeCount;
+    }
+
+    /**
+     * Apply the complete set of waiters as flat records of {@code stride} longs, each starting
+     * with (thread id, lock identity hash, owner id or {@link #NONE}). Waiters missing from the
+     * records are dropped, as with a complete {@link #apply}.
+     *
+     * @return number of edge changes applied
+     */
+    public synchronized int applyWaits(long[] records, int offset, int count, int stride) {
+        long before = version;
+        epoch++;
+        for (int i = 0; i < count; i++) {
+            int at = offset + i * stride;
+            long tid = records[at];
+            addWait(tid, (int) records[at + 1], records[at + 2]);
+            lastSeen.put(tid, epoch);
+        }
+        sweepUnseen();
+        lastChangeCount = (int) (version - before);
+        return lastChangeCount;
+    }
+
+    /**
+     * Record that {@code threadId} waits on {@code lockHash}, currently owned by {@code ownerId}
+     * ({@link #NONE} if unowned). No-op when nothing changed.
+     */
+    public synchronized void addWait(long threadId, int lockHash, long ownerId) {
+        long lock = lockHash;
+        long current = waitingOn.get(threadId);
+        if (current != lock) {
+            if (current != NONE) {
+                removeWait(threadId);
+            }
+            waitingOn.put(threadId, lock);
+            lockWaiters.put(lock, lockWaiters.getOrDefault(lock, 0) + 1);
+            version++;
+            setOwner(lock, ownerId);
+            checkCycleFrom(threadId);
+        } else {
+            setOwner(lock, ownerId);
+        }
+    }
+
+    /**
+     * The thread stopped waiting (it acquired the lock, timed out or was interrupted).
+     */
+    public synchronized void removeWait(long threadId) {
+        long lock = waitingOn.remove(threadId);
+        lastSeen.remove(threadId);
+        if (lock == NONE) {
+            return;
+        }
+        version++;
+        dissolveCycleOf(threadId);
+        long waiters = lockWaiters.get(lock) - 1;
+        if (waiters <= 0) {
+            lockWaiters.remove(lock);
+            lockOwner.remove(lock);
+            lockClassNames.remove(lock);
+        } else {
+            lockWaiters.put(lock, waiters);
+        }
+    }
+
+    /**
+     * The owner released the lock. Waiters stay in the graph until they report a new owner.
+     */
+    public synchronized void releaseHold(int lockHash, long ownerId) {
+        long lock = lockHash;
+        if (lockOwner.get(lock) == ownerId) {
+            setOwner(lock, NONE);
+        }
+    }
+
+    /**
+     * The thread terminated.
+     */
+    public synchronized void removeThread(long threadId) {
+        removeWait(threadId);
+        dissolveCycleOf(threadId);
+    }
+
+    // ---- queries ----
+
+    public synchronized boolean isWaiting(long threadId) {
+        return waitingOn.get(threadId) != NONE;
+    }
+
+    public synchronized boolean isInCycle(long threadId) {
+        return cycleOf.get(threadId) != NONE;
+    }
+
+    /** Identity hash of the lock the thread waits on, or {@link #NONE}. */
+    public synchronized long waitingOn(long threadId) {
+        return waitingOn.get(threadId);
+    }
+
+    /** Owner of a lock somebody waits on, or {@link #NONE}. */
+    public synchronized long ownerOf(int lockHash) {
+        return lockOwner.get(lockHash);
+    }
+
+    public synchronized String lockClassName(int lockHash) {
+        return lockClassNames.get((long) lockHash);
+    }
+
+    /** Current cycles, each ordered along the wait chain starting from its smallest thread id. */
+    public synchronized List<long[]> getCycles() {
+        List<long[]> result = new ArrayList<>(cycles.size());
+        for (long[] members : cycles.values()) {
+            result.add(members.clone());
+        }
+        return result;
+    }
+
+    public synchronized int cycleCount() {
+        return cycles.size();
+    }
+
+    /**
+     * Every waiter as flat records of {@link #WAIT_RECORD} longs: (thread id, lock identity hash,
+     * owner id or {@link #NONE}), the same layout {@link #applyWaits} takes.
+     */
+    public synchronized long[] waits() {
+        long[] waiters = waitingOn.keys();
+        long[] records = new long[waiters.length * WAIT_RECORD];
+        for (int i = 0; i < waiters.length; i++) {
+            long lock = waitingOn.get(waiters[i]);
+            records[i * WAIT_RECORD] = waiters[i];
+            records[i * WAIT_RECORD + 1] = lock;
+            records[i * WAIT_RECORD + 2] = lockOwner.get(lock);
+        }
+        return records;
+    }
+
+    public synchronized int waiterCount() {
+        return waitingOn.size();
+    }
+
+    /** Incremented on every edge change; equal versions mean an identical graph. */
+    public synchronized long version() {
+        return version;
+    }
+
+    /** Number of edge changes made by the last {@link #apply} call. */
+    public synchronized int lastChangeCount() {
+        return lastChangeCount;
+    }
+
+    public synchronized void clear() {
+        waitingOn.clear();
+        lockOwner.clear();
+        lockWaiters.clear();
+        lastSeen.clear();
+        cycleOf.clear();
+        cycles.clear();
+        lockClassNames.clear();
+        version++;
+    }
+
+    // ---- internals ----
+
+    private void setOwner(long lock, long ownerId) {
+        long current = lockOwner.get(lock);
+        if (current == ownerId) {
+            return;
+        }
+        version++;
+        if (current != NONE) {
+            // the edge waiter -> lock -> old owner is gone; break any cycle running through it
+            long cycleId = cycleOf.get(current);
+            if (cycleId != NONE) {
+                for (long member : cycles.get(cycleId)) {
+                    if (waitingOn.get(member) == lock) {
+                        dissolveCycle(cycleId);
+                        break;
+                    }
+                }
+            }
+        }
+        if (ownerId == NONE) {
+            lockOwner.remove(lock);
+        } else {
+            lockOwner.put(lock, ownerId);
+            checkCycleFrom(ownerId);
+        }
+    }
+
+    private long successor(long threadId) {
+        long lock = waitingOn.get(threadId);
+        return lock == NONE ? NONE : lockOwner.get(lock);
+    }
+
+    /**
+     * Follow the wait chain from {@code start}; if it returns to {@code start} a new cycle closed.
+     * Each thread has at most one outgoing edge, so the walk is bounded by the number of waiters.
+     */
+    private void checkCycleFrom(long start) {
+        if (cycleOf.get(start) != NONE) {
+            return;
+        }
+        int limit = waitingOn.size();
+        long current = successor(start);
+        int length = 1;
+        while (current != NONE && current != start && length <= limit) {
+            if (cycleOf.get(current) != NONE) {
+                return; // the chain drains into an existing cycle, start is not part of it
+            }
+            current = successor(current);
+            length++;
+        }
+        if (current != start) {
+            return;
+        }
+        // start from the smallest id, as CycleFinder does, so a cycle reads the same however it closed
+        long first = start;
+        for (long m = successor(start); m != start; m = successor(m)) {
+            if (m < first) first = m;
+        }
+        long[] members = new long[length];
+        long member = first;
+        for (int i = 0; i < length; i++) {
+            members[i] = member;
+            member = successor(member);
+        }
+        long cycleId = nextCycleId++;
+        cycles.put(cycleId, members);
+        for (long m : members) {
+            cycleOf.put(m, cycleId);
+        }
+    }
+
+    private void dissolveCycleOf(long threadId) {
+        long cycleId = cycleOf.get(threadId);
+        if (cycleId != NONE) {
+            dissolveCycle(cycleId);
+        }
+    }
+
+    private void dissolveCycle(long cycleId) {
+        long[] members = cycles.remove(cycleId);
+        if (members != null) {
+            for (long m : members) {
+                cycleOf.remove(m);
+            }
+        }
+    }
+
+    private void sweepUnseen() {
+        long[] waiters = waitingOn.keys();
+        for (long tid : waiters) {
+            if (lastSeen.get(tid) != epoch) {
+                removeThread(tid);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WaitForGraph{waiters=" + waitingOn.size() + ", locks=" + lockOwner.size()
+                + ", cycles=" + cycles.size() + ", version=" + version + "}";
+    }
+}
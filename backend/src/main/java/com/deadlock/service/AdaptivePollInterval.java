@@ -0,0 +1,174 @@
+package com.deadlock.service;
+
+import java.lang.Thread.State;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Polling interval of one monitored JVM, adapted from cheap contention signals.
+ *
+ * The interval is halved (down to {@code minMillis}) while contention builds up: BLOCKED threads
+ * whose blocked count or, with contention monitoring enabled, blocked time grew since the last
+ * sample. A new or changed deadlock pins it to the minimum for {@code hotWindowMillis}. A quiet
+ * sample stretches it by half (up to {@code maxMillis}). Contention events pushed between
+ * samples ({@link #onContention}) bring the next poll forward. Schedulers tick often and ask
+ * {@link #tryClaim(long)} whether the target is due.
+ */
+public class AdaptivePollInterval {
+
+    private final long minMillis;
+    private final long maxMillis;
+    private final long hotWindowMillis;
+
+    private long currentMillis;
+    private long nextDueAt;
+    private long lastStartAt;
+    private long lastDetectionAt;
+    private long lastBlockedCount = -1;
+    private long lastBlockedTime = -1;
+    private int lastBlockedThreads;
+    private String lastReason = "initial";
+
+    public AdaptivePollInterval(long initialMillis, long minMillis, long maxMillis, long hotWindowMillis) {
+        this.minMillis = Math.max(1, minMillis);
+        this.maxMillis = Math.max(this.minMillis, maxMillis);
+        this.hotWindowMillis = hotWindowMillis;
+        this.currentMillis = clamp(initialMillis);
+    }
+
+    /**
+     * True (and the next due time is booked) when a poll should start now.
+     */
+    public synchronized boolean tryClaim(long now) {
+        if (now < nextDueAt) {
+            return false;
+        }
+        lastStartAt = now;
+        nextDueAt = now + currentMillis;
+        return true;
+    }
+
+    /**
+     * Feed a full thread sample (all threads, no deadlock found).
+     */
+    public synchronized void onSample(ThreadInfo[] infos, long now) {
+        int blockedThreads = 0;
+        long blockedCount = 0;
+        long blockedTime = 0;
+        boolean timed = true;
+        for (ThreadInfo ti : infos) {
+            if (ti == null) continue;
+            if (ti.getThreadState() == State.BLOCKED) blockedThreads++;
+            blockedCount += ti.getBlockedCount();
+            long t = ti.getBlockedTime(); // -1 unless contention monitoring is enabled
+            if (t < 0) timed = false; else blockedTime += t;
+        }
+        if (!timed) blockedTime = -1;
+        onCounters(blockedThreads, blockedCount, blockedTime, now);
+    }
+
+    /**
+     * Feed pre-aggregated counters of all threads (e.g. from the in-target wait-graph MBean):
+     * threads BLOCKED now, summed blocked count, summed blocked time or -1.
+     */
+    public synchronized void onCounters(int blockedThreads, long blockedCount, long blockedTime, long now) {
+        boolean countGrew = lastBlockedCount >= 0 && blockedCount > lastBlockedCount;
+        boolean timeGrew = lastBlockedTime >= 0 && blockedTime > lastBlockedTime;
+        lastBlockedCount = blockedCount;
+        lastBlockedTime = blockedTime;
+        lastBlockedThreads = blockedThreads;
+
+        if (inHotWindow(now)) {
+            adjust(minMillis, "recent deadlock");
+        } else if (blockedThreads > 0 && (countGrew || timeGrew)) {
+            adjust(currentMillis / 2, "contention rising (" + blockedThreads + " blocked)");
+        } else if (blockedThreads == 0 && !countGrew && !timeGrew) {
+            adjust(currentMillis + currentMillis / 2, "quiet");
+        } else {
+            lastReason = "steady (" + blockedThreads + " blocked)";
+        }
+    }
+
+    /**
+     * A deadlock set appeared or changed: poll at the minimum interval for the hot window.
+     */
+    public synchronized void onDetection(long now) {
+        lastDetectionAt = now;
+        adjust(minMillis, "deadlock detected");
+    }
+
+    /**
+     * A contention event arrived between samples (e.g. from JFR): halve the interval and
+     * pull the next poll forward, but never closer than {@code minMillis} to the last one.
+     */
+    public synchronized void onContention(long now, String reason) {
+        long earliest = lastStartAt + minMillis;
+        if (nextDueAt <= Math.max(now, earliest)) {
+            return; // already due as soon as allowed
+        }
+        currentMillis = clamp(currentMillis / 2);
+        nextDueAt = Math.max(now, earliest);
+        lastReason = reason;
+    }
+
+    /**
+     * A cheap probe found nothing new (no full sample was taken).
+     */
+    public synchronized void onQuietProbe(long now) {
+        if (inHotWindow(now)) {
+            adjust(minMillis, "recent deadlock");
+        } else {
+            adjust(currentMillis + currentMillis / 2, "quiet");
+        }
+    }
+
+    /**
+     * A probe that measured no contention signal (no thread sample was taken): hold the interval,
+     * or pin it to the minimum inside the hot window. Only real samples stretch it.
+     */
+    public synchronized void onProbe(long now) {
+        if (inHotWindow(now)) {
+            adjust(minMillis, "recent deadlock");
+        } else {
+            lastReason = "probe only";
+        }
+    }
+
+    /**
+     * The poll failed (e.g. target unreachable): back off to the maximum.
+     */
+    public synchronized void onFailure() {
+        adjust(maxMillis, "poll failed");
+    }
+
+    public synchronized long currentMillis() {
+        return currentMillis;
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("intervalMs", currentMillis);
+        map.put("pollsPerSecond", Math.round(10000.0 / currentMillis) / 10.0);
+        map.put("minIntervalMs", minMillis);
+        map.put("maxIntervalMs", maxMillis);
+        map.put("blockedThreads", lastBlockedThreads);
+        map.put("reason", lastReason);
+        return map;
+    }
+
+    private void adjust(long millis, String reason) {
+        currentMillis = clamp(millis);
+        // re-book the pending poll relative to when the last one started
+        nextDueAt = lastStartAt + currentMillis;
+        lastReason = reason;
+    }
+
+    private boolean inHotWindow(long now) {
+        return lastDetectionAt > 0 && now - lastDetectionAt < hotWindowMillis;
+    }
+
+    private long clamp(long millis) {
+        return Math.max(minMillis, Math.min(maxMillis, millis));
+    }
+}
@@ -0,0 +1,152 @@
+package com.deadlock.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-capacity, lock-free ring buffer for event history.
+ *
+ * Appends claim a sequence number with one atomic increment and overwrite the oldest slot, so
+ * memory stays bounded no matter how often a service flaps. Entries also expire after
+ * {@code maxAgeMillis}. Each slot is stamped with its sequence number (seqlock style): readers
+ * validate the stamp before and after reading, and appends allocate nothing beyond the event.
+ */
+public class BoundedEventStore<T> {
+
+    private static final long WRITING = -1L;
+
+    private final int capacity;
+    private final int mask;
+    private final long maxAgeMillis;
+    private final AtomicReferenceArray<T> values;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray timestamps;
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity     rounded up to a power of two
+     * @param maxAgeMillis entries older than this are invisible to readers; 0 disables expiry
+     */
+    public BoundedEventStore(int capacity, long maxAgeMillis) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.maxAgeMillis = maxAgeMillis;
+        this.values = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.timestamps = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, WRITING);
+        }
+    }
+
+    /**
+     * Append an event, evicting the oldest one when full.
+     *
+     * @return the event's sequence number
+     */
+    public long append(T value) {
+        long seq = head.getAndIncrement();
+        int slot = (int) (seq & mask);
+        sequences.set(slot, WRITING);
+        timestamps.set(slot, System.currentTimeMillis());
+        values.set(slot, value);
+        sequences.set(slot, seq);
+        return seq;
+    }
+
+    /**
+     * Most recent live event, or null.
+     */
+    public T latest() {
+        long end = head.get();
+        long oldest = oldestLiveSequence(end, System.currentTimeMillis());
+        for (long seq = end - 1; seq >= oldest; seq--) {
+            T value = read(seq);
+            if (value != null) return value;
+        }
+        return null;
+    }
+
+    /**
+     * Number of live events (bounded by capacity and age).
+     */
+    public int size() {
+        long end = head.get();
+        return (int) (end - oldestLiveSequence(end, System.currentTimeMillis()));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Total events ever appended, including evicted ones.
+     */
+    public long totalAppended() {
+        return head.get();
+    }
+
+    /**
+     * Visit one page of live events, newest first, without copying the store.
+     */
+    public void forEach(int offset, int limit, Consumer<? super T> consumer) {
+        long end = head.get();
+        long oldest = oldestLiveSequence(end, System.currentTimeMillis());
+        long seq = end - 1 - Math.max(0, offset);
+        for (int visited = 0; seq >= oldest && visited < limit; seq--) {
+            T value = read(seq);
+            if (value != null) {
+                consumer.accept(value);
+                visited++;
+            }
+        }
+    }
+
+    /**
+     * One page of live events, newest first. Only the page itself is copied.
+     */
+    public List<T> page(int offset, int limit) {
+        List<T> page = new ArrayList<>(Math.max(0, Math.min(limit, capacity)));
+        forEach(offset, limit, page::add);
+        return page;
+    }
+
+    /**
+     * Read the value stored under {@code seq}, or null if it was overwritten or is mid-write.
+     */
+    private T read(long seq) {
+        int slot = (int) (seq & mask);
+        if (sequences.get(slot) != seq) return null;
+        T value = values.get(slot);
+        return sequences.get(slot) == seq ? value : null;
+    }
+
+    /**
+     * First sequence that is still within capacity and younger than maxAge. Timestamps grow with
+     * the sequence, so the age boundary is found by binary search.
+     */
+    private long oldestLiveSequence(long end, long now) {
+        long low = Math.max(0, end - capacity);
+        if (maxAgeMillis <= 0) {
+            return low;
+        }
+        long cutoff = now - maxAgeMillis;
+        long high = end;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            int slot = (int) (mid & mask);
+            long ts = timestamps.get(slot);
+            if (sequences.get(slot) == mid && ts < cutoff) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
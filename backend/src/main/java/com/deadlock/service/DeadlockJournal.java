@@ -0,0 +1,447 @@
+package com.deadlock.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Persistent append-only journal of deadlock and resolution events.
+ *
+ * Records go into rolling memory-mapped segment files. Each segment starts with a fixed header
+ * holding its time range, record count and write position, so startup only reads the headers and
+ * maps the active segment; older segments are mapped (and their sparse time index built) lazily
+ * the first time a range query touches them.
+ *
+ * Segment layout: [header][record]*, record = [int length][byte type][long timestamp][payload].
+ * Record lengths are checked against the segment's write position whenever a segment is walked;
+ * the first invalid one ends the segment there, so a torn or corrupted tail loses only itself.
+ */
+@Service
+public class DeadlockJournal {
+
+    public static final byte TYPE_DEADLOCK = 1;
+    public static final byte TYPE_RESOLUTION = 2;
+
+    private static final int MAGIC = 0xDEAD10C4;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_OVERHEAD = 4 + 1 + 8;
+    private static final int INDEX_STRIDE = 64;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // header field offsets
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SEGMENT_NO = 8;
+    private static final int H_FIRST_TS = 16;
+    private static final int H_LAST_TS = 24;
+    private static final int H_COUNT = 32;
+    private static final int H_WRITE_POS = 36;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final List<Segment> segments = new ArrayList<>();
+    // dropped segments whose file could not be deleted yet (still mapped on Windows); retried on every roll
+    private final List<Path> pendingDeletes = new ArrayList<>();
+    private Segment active;
+
+    public DeadlockJournal(@Value("${deadlock.journal.enabled:true}") boolean enabled,
+                           @Value("${deadlock.journal.dir:data/journal}") String directory,
+                           @Value("${deadlock.journal.segment-size-mb:16}") int segmentSizeMb,
+                           @Value("${deadlock.journal.max-segments:64}") int maxSegments) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.maxSegments = Math.max(1, maxSegments);
+        if (enabled) {
+            recover();
+        }
+    }
+
+    // ---- write path ----
+
+    public void appendDeadlock(DeadlockService.DeadlockEvent event) {
+        long ts = event.detectedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        byte[] id = utf8(event.id);
+        ByteBuffer payload = ByteBuffer.allocate(2 + id.length + 4 + 8 * event.deadlockedThreads.size());
+        putString(payload, id);
+        putThreads(payload, event.deadlockedThreads);
+        append(TYPE_DEADLOCK, ts, payload);
+    }
+
+    public void appendResolution(DeadlockService.ResolutionEvent event) {
+        long ts = event.timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        byte[] id = utf8(event.id);
+        byte[] method = utf8(event.method);
+        byte[] status = utf8(event.status);
+        byte[] details = utf8(event.details);
+        ByteBuffer payload = ByteBuffer.allocate(8 + id.length + method.length + status.length + details.length
+                + 8 + 4 + 8 * event.affectedThreads.size());
+        putString(payload, id);
+        putString(payload, method);
+        putString(payload, status);
+        putString(payload, details);
+        payload.putLong(event.resolutionTime);
+        putThreads(payload, event.affectedThreads);
+        append(TYPE_RESOLUTION, ts, payload);
+    }
+
+    private synchronized void append(byte type, long timestamp, ByteBuffer payload) {
+        if (!enabled) return;
+        payload.flip();
+        int length = RECORD_OVERHEAD + payload.remaining();
+        if (length > segmentSize - HEADER_SIZE) {
+            System.err.println("Journal record of " + length + " bytes does not fit a segment, dropped");
+            return;
+        }
+        try {
+            if (active == null || active.writePosition + length > segmentSize) {
+                roll();
+            }
+            MappedByteBuffer buf = active.buffer;
+            int pos = active.writePosition;
+            buf.putInt(pos, length);
+            buf.put(pos + 4, type);
+            buf.putLong(pos + 5, timestamp);
+            buf.put(pos + RECORD_OVERHEAD, payload, payload.position(), payload.remaining());
+
+            active.recordAppended(pos, timestamp, length);
+            // the header is written last so a crash mid-record leaves the segment consistent
+            buf.putLong(H_LAST_TS, active.lastTimestamp);
+            buf.putLong(H_FIRST_TS, active.firstTimestamp);
+            buf.putInt(H_COUNT, active.count);
+            buf.putInt(H_WRITE_POS, active.writePosition);
+        } catch (IOException e) {
+            System.err.println("Journal append failed: " + e.getMessage());
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null && active.buffer != null) {
+            active.buffer.force();
+            active.buffer = null; // reopened read-only on demand
+        }
+        long segmentNo = active == null ? 0 : active.segmentNo + 1;
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentNo, SEGMENT_SUFFIX));
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            Segment seg = new Segment(file, segmentNo);
+            seg.buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            seg.buffer.putInt(H_MAGIC, MAGIC);
+            seg.buffer.putInt(H_VERSION, FORMAT_VERSION);
+            seg.buffer.putLong(H_SEGMENT_NO, segmentNo);
+            seg.buffer.putInt(H_WRITE_POS, HEADER_SIZE);
+            seg.indexed = true; // built while appending
+            segments.add(seg);
+            active = seg;
+        }
+        dropOldSegments();
+    }
+
+    /**
+     * Drop segments beyond {@code maxSegments}. The mapping of a dropped segment is only released
+     * when its buffer is collected, and Windows refuses to delete a mapped file, so a failed delete
+     * is queued and retried on later rolls; files still left over are trimmed again at recovery.
+     */
+    private void dropOldSegments() {
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.remove(0);
+            oldest.buffer = null;
+            pendingDeletes.add(oldest.file);
+        }
+        pendingDeletes.removeIf(file -> {
+            try {
+                Files.deleteIfExists(file);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Journal segment " + file.getFileName() + " not deleted yet: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    // ---- recovery ----
+
+    /**
+     * Read only the segment headers; the active segment is mapped for appending.
+     */
+    private void recover() {
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                                && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            for (Path file : files) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    header.clear();
+                    ch.read(header, 0);
+                    if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != FORMAT_VERSION) {
+                        System.err.println("Skipping unrecognised journal segment " + file.getFileName());
+                        continue;
+                    }
+                    Segment seg = new Segment(file, header.getLong(H_SEGMENT_NO));
+                    seg.firstTimestamp = header.getLong(H_FIRST_TS);
+                    seg.lastTimestamp = header.getLong(H_LAST_TS);
+                    seg.count = header.getInt(H_COUNT);
+                    seg.writePosition = (int) Math.max(HEADER_SIZE, Math.min(header.getInt(H_WRITE_POS), ch.size()));
+                    segments.add(seg);
+                }
+            }
+            dropOldSegments(); // segments a previous run failed to delete, or a lowered max-segments
+            if (!segments.isEmpty()) {
+                Segment last = segments.get(segments.size() - 1);
+                try (FileChannel ch = FileChannel.open(last.file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    last.buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+                }
+                if (last.buffer.capacity() == segmentSize) {
+                    // appends continue from here: walk it now so they never follow a corrupted tail
+                    last.ensureIndexed(last.buffer);
+                    active = last;
+                } else {
+                    // segment size changed between runs: keep it read-only and start a new one
+                    last.buffer = null;
+                    active = last;
+                    roll();
+                }
+            }
+            long records = segments.stream().mapToLong(s -> s.count).sum();
+            System.out.println("Journal recovered " + segments.size() + " segments (" + records + " records) in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms from " + directory.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Journal recovery failed: " + e.getMessage());
+        }
+    }
+
+    // ---- read path ----
+
+    /**
+     * Records with {@code from <= timestamp <= to}, oldest first, at most {@code limit}.
+     * Only segments whose header range overlaps the query are touched.
+     */
+    public synchronized List<JournalRecord> read(long from, long to, int limit) {
+        List<JournalRecord> result = new ArrayList<>();
+        if (!enabled) return result;
+        for (Segment seg : segments) {
+            if (seg.count == 0 || seg.lastTimestamp < from || seg.firstTimestamp > to) continue;
+            try {
+                ByteBuffer buf = seg.readBuffer();
+                seg.ensureIndexed(buf);
+                int pos = seg.seek(from);
+                while (pos < seg.writePosition && result.size() < limit) {
+                    int length = seg.recordLength(buf, pos);
+                    if (length < 0) break;
+                    long ts = buf.getLong(pos + 5);
+                    if (ts > to) break;
+                    if (ts >= from) {
+                        result.add(decode(buf, pos, length, ts));
+                    }
+                    pos += length;
+                }
+            } catch (IOException e) {
+                System.err.println("Journal read failed for " + seg.file.getFileName() + ": " + e.getMessage());
+            }
+            if (result.size() >= limit) break;
+        }
+        return result;
+    }
+
+    public synchronized long recordCount() {
+        long total = 0;
+        for (Segment seg : segments) total += seg.count;
+        return total;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (active != null && active.buffer != null) {
+            active.buffer.force();
+        }
+    }
+
+    private JournalRecord decode(ByteBuffer source, int pos, int length, long ts) {
+        ByteBuffer buf = source.duplicate();
+        buf.position(pos + RECORD_OVERHEAD).limit(pos + length);
+        JournalRecord r = new JournalRecord();
+        r.timestamp = ts;
+        r.type = source.get(pos + 4) == TYPE_DEADLOCK ? "DEADLOCK" : "RESOLUTION";
+        r.id = getString(buf);
+        if (source.get(pos + 4) == TYPE_RESOLUTION) {
+            r.method = getString(buf);
+            r.status = getString(buf);
+            r.details = getString(buf);
+            r.resolutionTime = buf.getLong();
+        }
+        int n = buf.getInt();
+        r.threads = new long[n];
+        for (int i = 0; i < n; i++) r.threads[i] = buf.getLong();
+        return r;
+    }
+
+    private static byte[] utf8(String s) {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        return bytes.length > Short.MAX_VALUE ? Arrays.copyOf(bytes, Short.MAX_VALUE) : bytes;
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putThreads(ByteBuffer buf, Set<Long> threads) {
+        buf.putInt(threads.size());
+        for (long id : threads) buf.putLong(id);
+    }
+
+    /**
+     * One segment file plus its lazily built sparse time index.
+     */
+    private final class Segment {
+        final Path file;
+        final long segmentNo;
+        MappedByteBuffer buffer;
+        long firstTimestamp;
+        long lastTimestamp;
+        int count;
+        int writePosition = HEADER_SIZE;
+
+        // every INDEX_STRIDE-th record: its timestamp and position
+        boolean indexed;
+        long[] indexTimestamps = new long[16];
+        int[] indexPositions = new int[16];
+        int indexSize;
+
+        Segment(Path file, long segmentNo) {
+            this.file = file;
+            this.segmentNo = segmentNo;
+        }
+
+        void recordAppended(int pos, long timestamp, int length) {
+            if (count == 0) firstTimestamp = timestamp;
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+            if (indexed && count % INDEX_STRIDE == 0) addIndexEntry(timestamp, pos);
+            count++;
+            writePosition = pos + length;
+        }
+
+        ByteBuffer readBuffer() throws IOException {
+            if (buffer == null) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                }
+            }
+            return buffer;
+        }
+
+        /**
+         * Walk all records once to build the index. At the first record whose length does not
+         * fit, the segment's logical end is truncated to it (and persisted when writable).
+         */
+        void ensureIndexed(ByteBuffer buf) {
+            if (indexed) return;
+            writePosition = Math.min(writePosition, buf.capacity());
+            int pos = HEADER_SIZE;
+            int records = 0;
+            while (pos < writePosition) {
+                int length = recordLength(buf, pos);
+                if (length < 0) {
+                    System.err.println("Journal segment " + file.getFileName() + " corrupted at offset " + pos
+                            + ", truncated after " + records + " records");
+                    writePosition = pos;
+                    count = records;
+                    if (!buf.isReadOnly()) {
+                        buf.putInt(H_COUNT, count);
+                        buf.putInt(H_WRITE_POS, writePosition);
+                    }
+                    break;
+                }
+                if (records % INDEX_STRIDE == 0) addIndexEntry(buf.getLong(pos + 5), pos);
+                records++;
+                pos += length;
+            }
+            indexed = true;
+        }
+
+        /**
+         * Length of the record at {@code pos}, or -1 if it cannot be a whole record before the write position.
+         */
+        int recordLength(ByteBuffer buf, int pos) {
+            if (pos + RECORD_OVERHEAD > writePosition) return -1;
+            int length = buf.getInt(pos);
+            return length >= RECORD_OVERHEAD && length <= writePosition - pos ? length : -1;
+        }
+
+        /**
+         * Position of the last indexed record with timestamp below {@code from}.
+         */
+        int seek(long from) {
+            int lo = 0, hi = indexSize - 1, best = HEADER_SIZE;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (indexTimestamps[mid] < from) {
+                    best = indexPositions[mid];
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return best;
+        }
+
+        private void addIndexEntry(long timestamp, int pos) {
+            if (indexSize == indexTimestamps.length) {
+                indexTimestamps = Arrays.copyOf(indexTimestamps, indexSize * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+            }
+            indexTimestamps[indexSize] = timestamp;
+            indexPositions[indexSize] = pos;
+            indexSize++;
+        }
+    }
+
+    /**
+     * Decoded journal entry served by /api/deadlocks range queries
+     */
+    public static class JournalRecord {
+        public String type;
+        public long timestamp;
+        public String id;
+        public long[] threads;
+        public String method;
+        public String status;
+        public String details;
+        public long resolutionTime;
+    }
+}
@@ -7,20 +7,30 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.deadlock.model.DeadlockSnapshot;
+import com.deadlock.model.ThreadCondenser;
+import com.deadlock.model.ThreadSample;
+import com.deadlock.model.WaitForGraph;
+
+import jakarta.annotation.PreDestroy;
 
 /**
  * Complete DeadlockService - simplified, robust, and exposes controller-required methods.
@@ -30,33 +40,159 @@ public class DeadlockService{
 
     private final ThreadMXBean threadMXBean;
     private final SimpMessagingTemplate messagingTemplate;
+    private final SnapshotPublisher snapshotPublisher;
+    private final DeadlockJournal journal;
+    private final FrameDictionary frameDictionary;
 
-    // Last snapshot published to UI
-    private DeadlockSnapshot lastSnapshot;
+    // Single-flight capture: one dump at a time, concurrent callers share its result. The last
+    // result is swapped in as one immutable Capture, so readers never see half-updated state.
+    private final AtomicReference<Capture> lastCapture = new AtomicReference<>();
+    private final AtomicReference<Flight> inFlight = new AtomicReference<>();
+    @Value("${deadlock.detection.coalesce-window-ms:50}")
+    private long coalesceWindowMs = 50;
 
     // Resolution history and stats
-    private final Map<Long, ResolutionEvent> resolutionHistory = new ConcurrentHashMap<>();
+    private final BoundedEventStore<ResolutionEvent> resolutionHistory;
+    private final BoundedEventStore<DeadlockEvent> deadlockEvents;
     private final AtomicInteger resolutionCounter = new AtomicInteger(0);
-    private final List<DeadlockEvent> deadlockEvents = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong successfulResolutions = new AtomicLong();
+    private final AtomicLong failedResolutions = new AtomicLong();
+    private final AtomicLong totalResolutionMillis = new AtomicLong();
 
     // Simple state
     private final Set<Long> knownDeadlockedThreads = ConcurrentHashMap.newKeySet();
+    private final Map<String, Boolean> remoteDeadlockState = new ConcurrentHashMap<>();
+
+    // Wait-for graph of the local JVM, updated with the diff of each full dump
+    private final WaitForGraph waitForGraph = new WaitForGraph();
     private boolean autoResolutionEnabled = true;
 
+    // Tiered detection: cheap findDeadlockedThreads() probe every tick, full ThreadInfo dump only on change
+    @Value("${deadlock.detection.tiered:true}")
+    private boolean tieredDetection = true;
+    @Value("${deadlock.detection.heavy-sample-interval-ms:10000}")
+    private long heavySampleIntervalMs = 10000;
+    private final AtomicLong probeCount = new AtomicLong();
+    private final AtomicLong probeNanos = new AtomicLong();
+    private final AtomicLong heavyDumpCount = new AtomicLong();
+    private final AtomicLong heavyDumpNanos = new AtomicLong();
+    private final AtomicLong skippedDumpCount = new AtomicLong();
+    // The fast path only calls findDeadlockedThreads() and getThreadCount(); a full sample is still
+    // taken every N probes, when the live thread count moved, or after a JFR contention event
+    @Value("${deadlock.detection.full-sample-every:4}")
+    private int fullSampleEvery = 4;
+    private volatile boolean sampleRequested;
+
+    // Condensation: above this many thread nodes, idle threads are folded into pattern/state groups
+    @Value("${deadlock.condense.threshold:500}")
+    private int condenseThreshold = 500;
+    @Value("${deadlock.condense.min-group-size:3}")
+    private int condenseMinGroupSize = 3;
+
+    // Adaptive local polling: monitorDeadlocks() ticks finely and runs only when this says it is due
+    private final AdaptivePollInterval localPolling;
+
+    // Resolutions run on one thread after a grace period, then verify the cycle is gone
+    private final ResolutionExecutor resolver;
+    private final VictimSelector victimSelector;
+    @Value("${deadlock.resolution.verify-timeout-ms:1000}")
+    private long verifyTimeoutMs = 1000;
+    @Value("${deadlock.resolution.verify-interval-ms:10}")
+    private long verifyIntervalMs = 10;
+
+    // Detector self-instrumentation (Prometheus text on /api/metrics and JMX), handles looked up once
+    private final DetectorMetrics.Histogram probeSeconds;
+    private final DetectorMetrics.Histogram dumpSeconds;
+    private final DetectorMetrics.Histogram detectSeconds;
+    private final DetectorMetrics.Histogram publishSeconds;
+    private final DetectorMetrics.Histogram recoverySeconds;
+    private final LongAdder capturesRun;
+    private final LongAdder capturesJoined;
+    private final LongAdder capturesReused;
+
     // optional external JMX monitor (can be null in some builds)
     private final JMXProcessMonitor jmxMonitor;
 
-    public DeadlockService(SimpMessagingTemplate messagingTemplate, JMXProcessMonitor jmxMonitor) {
+    public DeadlockService(SimpMessagingTemplate messagingTemplate, SnapshotPublisher snapshotPublisher,
+                           JMXProcessMonitor jmxMonitor, DeadlockJournal journal, FrameDictionary frameDictionary,
+                           DetectorMetrics detectorMetrics,
+                           @Value("${deadlock.history.capacity:1024}") int historyCapacity,
+                           @Value("${deadlock.history.max-age-ms:86400000}") long historyMaxAgeMs,
+                           @Value("${deadlock.polling.initial-interval-ms:2000}") long initialIntervalMs,
+                           @Value("${deadlock.polling.min-interval-ms:250}") long minIntervalMs,
+                           @Value("${deadlock.polling.max-interval-ms:5000}") long maxIntervalMs,
+                           @Value("${deadlock.polling.hot-window-ms:10000}") long hotWindowMs,
+                           @Value("${deadlock.resolution.queue-capacity:16}") int resolutionQueueCapacity,
+                           @Value("${deadlock.resolution.grace-ms:500}") long resolutionGraceMs) {
         this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.resolutionHistory = new BoundedEventStore<>(historyCapacity, historyMaxAgeMs);
+        this.deadlockEvents = new BoundedEventStore<>(historyCapacity, historyMaxAgeMs);
+        this.localPolling = new AdaptivePollInterval(initialIntervalMs, minIntervalMs, maxIntervalMs, hotWindowMs);
+        this.resolver = new ResolutionExecutor(resolutionQueueCapacity, resolutionGraceMs);
+        this.victimSelector = new VictimSelector(threadMXBean);
         this.messagingTemplate = messagingTemplate;
+        this.snapshotPublisher = snapshotPublisher;
+        this.journal = journal;
+        this.frameDictionary = frameDictionary;
         this.jmxMonitor = jmxMonitor;
-        this.lastSnapshot = new DeadlockSnapshot();
+        String stageHelp = "Duration of a local detection pipeline stage";
+        this.probeSeconds = detectorMetrics.timer("deadlock_stage_seconds", stageHelp, "stage", "probe");
+        this.dumpSeconds = detectorMetrics.timer("deadlock_stage_seconds", stageHelp, "stage", "dump");
+        this.detectSeconds = detectorMetrics.timer("deadlock_stage_seconds", stageHelp, "stage", "detect");
+        this.publishSeconds = detectorMetrics.timer("deadlock_stage_seconds", stageHelp, "stage", "publish");
+        this.recoverySeconds = detectorMetrics.timer("deadlock_time_to_recovery_seconds", "Time from detection to verified recovery");
+        String captureHelp = "Detection requests by how they were served";
+        this.capturesRun = detectorMetrics.counter("deadlock_captures_total", captureHelp, "outcome", "captured");
+        this.capturesJoined = detectorMetrics.counter("deadlock_captures_total", captureHelp, "outcome", "joined");
+        this.capturesReused = detectorMetrics.counter("deadlock_captures_total", captureHelp, "outcome", "reused");
+        detectorMetrics.gauge("deadlock_resolver_queue_depth", "Resolutions waiting or running", resolver::queued);
+        detectorMetrics.gauge("deadlock_resolver_in_flight_cycles", "Distinct cycles being resolved", resolver::inFlight);
+        detectorMetrics.gauge("deadlock_local_waiting_threads", "Threads waiting on a lock in this JVM", waitForGraph::waiterCount);
+        if (jmxMonitor != null) {
+            jmxMonitor.addPollListener(this::publishRemoteResult);
+            jmxMonitor.addStopListener(this::forgetRemoteTarget);
+        }
 
         // Debug
         System.out.println("DeadlockService initialized. Auto-resolution = " + autoResolutionEnabled);
     }
 
     // ---- Small inner models ----
+
+    /**
+     * Result of one capture: the snapshot with the probe state it was built from. Never mutated
+     * after it is published through {@link #lastCapture}.
+     */
+    private static class Capture {
+        final DeadlockSnapshot snapshot;
+        final long[] probeIds;
+        // wall clock of the last full dump behind the snapshot (tiered detection)
+        final long heavySampleAt;
+        // System.nanoTime() when the capture (dump or fast-path probe) started
+        final long startedAt;
+        // live threads at the last full dump, and fast-path probes served since
+        final int threadCount;
+        final int probesSinceSample;
+
+        Capture(DeadlockSnapshot snapshot, long[] probeIds, long heavySampleAt, long startedAt,
+                int threadCount, int probesSinceSample) {
+            this.snapshot = snapshot;
+            this.probeIds = probeIds;
+            this.heavySampleAt = heavySampleAt;
+            this.startedAt = startedAt;
+            this.threadCount = threadCount;
+            this.probesSinceSample = probesSinceSample;
+        }
+    }
+
+    /**
+     * The capture currently running and the future its joiners wait on
+     */
+    private static class Flight {
+        final CompletableFuture<DeadlockSnapshot> result = new CompletableFuture<>();
+        final Thread owner = Thread.currentThread();
+        final long startedAt = System.nanoTime();
+    }
     public static class ResolutionEvent {
         public final String id;
         public final LocalDateTime timestamp;
@@ -136,26 +272,59 @@ public class DeadlockService{
     }
 
     /**
-     * Return last snapshot (used by REST controller).
+     * Return last snapshot (used by REST controller), with the frame table its frame ids refer to.
      */
     public DeadlockSnapshot getLastSnapshot() {
-        if (lastSnapshot == null) {
-            return detectDeadlocks();
-        }
-        return lastSnapshot;
+        Capture last = lastCapture.get();
+        DeadlockSnapshot snapshot = last == null ? detectDeadlocks() : last.snapshot;
+        return snapshotPublisher.withFrameTable(snapshot);
     }
 
     /**
-     * Expose resolution history summary.
+     * Expose resolution history summary: O(1) counters plus one page of each history, newest first.
      */
-    public Map<String, Object> getResolutionHistory() {
+    public Map<String, Object> getResolutionHistory(int page, int size) {
+        int offset = Math.max(0, page) * Math.max(0, size);
         Map<String, Object> ret = new HashMap<>();
-        ret.put("totalEvents", deadlockEvents.size());
+        ret.put("totalEvents", deadlockEvents.totalAppended());
         ret.put("totalResolutions", resolutionCounter.get());
-        ret.put("resolutionEvents", new ArrayList<>(resolutionHistory.values()));
+        ret.put("successfulResolutions", successfulResolutions.get());
+        ret.put("failedResolutions", failedResolutions.get());
+        long resolutions = resolutionCounter.get();
+        ret.put("avgResolutionTime", resolutions == 0 ? 0 : totalResolutionMillis.get() / resolutions);
+        ret.put("pipeline", resolver.toMap());
+        ret.put("strategies", victimSelector.toMap());
+        ret.put("retainedEvents", deadlockEvents.size());
+        ret.put("retainedResolutions", resolutionHistory.size());
+        ret.put("page", page);
+        ret.put("size", size);
+        ret.put("resolutionEvents", resolutionHistory.page(offset, size));
+        ret.put("deadlockEvents", deadlockEvents.page(offset, size));
         return ret;
     }
 
+    /**
+     * Journaled events in [from, to] (epoch millis), oldest first. Serves history older than the
+     * in-memory ring buffers, including events from before the last restart.
+     */
+    public Map<String, Object> getJournalRange(long from, long to, int limit) {
+        Map<String, Object> ret = new HashMap<>();
+        ret.put("from", from);
+        ret.put("to", to);
+        ret.put("journalRecords", journal.recordCount());
+        ret.put("events", journal.read(from, to, limit));
+        return ret;
+    }
+
+    /**
+     * Tiered fast path and coalescing window (deadlock.detection.tiered,
+     * deadlock.detection.coalesce-window-ms), for use outside Spring such as benchmarks.
+     */
+    public void configureDetection(boolean tieredDetection, long coalesceWindowMs) {
+        this.tieredDetection = tieredDetection;
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
     /**
      * Toggle auto-resolution on/off.
      */
@@ -226,19 +395,112 @@ public class DeadlockService{
     /**
      * Detect deadlocks in current JVM (or via JMX if implemented).
      * Returns a DeadlockSnapshot object for the UI.
+     * Joins a capture already in flight, or reuses one started within coalesce-window-ms.
      */
     public DeadlockSnapshot detectDeadlocks() {
+        return capture(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(coalesceWindowMs), true);
+    }
+
+    /**
+     * A snapshot captured entirely after this call, for callers that just changed the JVM
+     * (e.g. interrupted a victim) and must not get a result from before the change.
+     */
+    private DeadlockSnapshot detectDeadlocksFresh() {
+        return capture(System.nanoTime(), false);
+    }
+
+    /**
+     * Single-flight capture. Returns the last capture if it started at or after
+     * {@code notBefore}; otherwise joins the capture in flight (any one when
+     * {@code joinAnyInFlight}, else only one started at or after {@code notBefore}), or runs one.
+     */
+    private DeadlockSnapshot capture(long notBefore, boolean joinAnyInFlight) {
+        while (true) {
+            Capture last = lastCapture.get();
+            if (last != null && last.startedAt - notBefore >= 0) {
+                capturesReused.increment();
+                return last.snapshot;
+            }
+            Flight flight = inFlight.get();
+            if (flight != null) {
+                if (flight.owner == Thread.currentThread()) {
+                    throw new IllegalStateException("detectDeadlocks() called from inside a capture");
+                }
+                DeadlockSnapshot shared = flight.result.exceptionally(e -> null).join();
+                if (shared != null && (joinAnyInFlight || flight.startedAt - notBefore >= 0)) {
+                    capturesJoined.increment();
+                    return shared;
+                }
+                continue; // too old for this caller (or failed): run the next one
+            }
+            Flight mine = new Flight();
+            if (!inFlight.compareAndSet(null, mine)) {
+                continue;
+            }
+            try {
+                capturesRun.increment();
+                DeadlockSnapshot snapshot = runCapture(mine.startedAt);
+                mine.result.complete(snapshot);
+                return snapshot;
+            } catch (RuntimeException | Error e) {
+                mine.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.set(null);
+            }
+        }
+    }
+
+    /**
+     * One probe and, unless the tiered fast path applies, one full dump. Only ever runs on one
+     * thread at a time (see {@link #capture}).
+     */
+    private DeadlockSnapshot runCapture(long probeStart) {
+        Capture last = lastCapture.get();
         try {
             long[] deadlocked = threadMXBean.findDeadlockedThreads(); // returns IDs
+            long probeElapsed = System.nanoTime() - probeStart;
+            probeNanos.addAndGet(probeElapsed);
+            probeSeconds.recordNanos(probeElapsed);
+            probeCount.incrementAndGet();
+
+            // Fast path: same deadlocked set and thread count as last time, and the heavy sample
+            // is still fresh. No getThreadInfo call at all: the interval is held, not stretched
+            long[] probeIds = deadlocked == null ? new long[0] : deadlocked.clone();
+            Arrays.sort(probeIds);
+            boolean changed = last == null || !Arrays.equals(probeIds, last.probeIds);
+            int threadCount = threadMXBean.getThreadCount();
+            long now = System.currentTimeMillis();
+            if (tieredDetection && !changed && !sampleRequested
+                    && threadCount == last.threadCount
+                    && last.probesSinceSample + 1 < fullSampleEvery
+                    && now - last.heavySampleAt < heavySampleIntervalMs) {
+                skippedDumpCount.incrementAndGet();
+                localPolling.onProbe(now);
+                lastCapture.set(new Capture(last.snapshot, last.probeIds, last.heavySampleAt, probeStart,
+                        last.threadCount, last.probesSinceSample + 1));
+                detectSeconds.recordNanos(System.nanoTime() - probeStart);
+                return last.snapshot;
+            }
+            sampleRequested = false;
+            long dumpElapsed; // the getThreadInfo call only, not the snapshot built from it
 
             DeadlockSnapshot snapshot = new DeadlockSnapshot();
             snapshot.setTimestamp(System.currentTimeMillis());
+            boolean recovered = false;
+            int condensed = 0;
 
             if (deadlocked == null || deadlocked.length == 0) {
                 snapshot.setDeadlockDetected(false);
-                // publish thread list (light)
-                ThreadInfo[] all = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), true, true);
-
+                // publish thread list (light: no monitors, synchronizers or stack frames)
+                long[] allIds = threadMXBean.getAllThreadIds();
+                long dumpStart = System.nanoTime();
+                ThreadInfo[] all = threadMXBean.getThreadInfo(allIds, false, false, 0);
+                dumpElapsed = System.nanoTime() - dumpStart;
+                waitForGraph.apply(all, true);
+                localPolling.onSample(all, now);
+
+                Set<Long> onWaitPath = new HashSet<>();
                 for (ThreadInfo ti : all) {
                     if (ti == null) continue;
                     DeadlockSnapshot.ThreadData td = new DeadlockSnapshot.ThreadData();
@@ -247,17 +509,29 @@ public class DeadlockService{
                     td.state = ti.getThreadState().toString();
                     td.isDeadlocked = false;
                     snapshot.getThreads().add(td);
+                    snapshot.mixThread(ti);
+                    addWaitPath(onWaitPath, ti);
                 }
+                condensed = ThreadCondenser.condense(snapshot, onWaitPath, condenseThreshold, condenseMinGroupSize);
+                snapshot.addWaitGraph(waitForGraph);
 
                 // If we previously knew of deadlocks, mark resolved and broadcast
                 if (!knownDeadlockedThreads.isEmpty()) {
-                    markCurrentDeadlocksResolved();
+                    recovered = markCurrentDeadlocksResolved();
                     knownDeadlockedThreads.clear();
                 }
             } else {
                 // Deadlock detected
                 snapshot.setDeadlockDetected(true);
+                long dumpStart = System.nanoTime();
                 ThreadInfo[] infos = threadMXBean.getThreadInfo(deadlocked, true, true);
+                dumpElapsed = System.nanoTime() - dumpStart;
+                waitForGraph.apply(infos, false);
+                if (changed) {
+                    localPolling.onDetection(now);
+                } else {
+                    localPolling.onProbe(now); // only the deadlocked threads were dumped
+                }
                 for (ThreadInfo ti : infos) {
                     if (ti == null) continue;
                     DeadlockSnapshot.ThreadData td = new DeadlockSnapshot.ThreadData();
@@ -265,9 +539,12 @@ public class DeadlockService{
                     td.name = ti.getThreadName();
                     td.state = ti.getThreadState().toString();
                     td.isDeadlocked = true;
-                    Arrays.stream(ti.getStackTrace()).limit(10).forEach(st -> td.stackTrace.add(st.toString()));
+                    td.frames = frameDictionary.intern(ti.getStackTrace(), 10);
                     snapshot.getThreads().add(td);
+                    snapshot.mixThread(ti);
                 }
+                // cycles, locks and edges come from the graph the dump was just applied to
+                snapshot.addWaitGraph(waitForGraph);
 
                 // bookkeeping and event creation
                 Set<Long> cur = new HashSet<>();
@@ -277,79 +554,176 @@ public class DeadlockService{
                 if (!newFound.isEmpty()) {
                     DeadlockEvent ev = new DeadlockEvent(cur);
                     ev.addResolutionStep("Detected deadlock with threads: " + cur);
-                    deadlockEvents.add(ev);
+                    deadlockEvents.append(ev);
+                    journal.appendDeadlock(ev);
 
                     // Auto-resolution: attempt simple interrupt of one candidate (best-effort)
-                    if (autoResolutionEnabled) {
-                        new Thread(() -> {
-                            try {
-                                Thread.sleep(6000); // short wait so dashboard shows detection
-                                attemptSimpleResolution(cur, infos, ev);
-                            } catch (InterruptedException ignored) {}
-                        }, "DeadlockResolver").start();
+                    if (autoResolutionEnabled
+                            && !resolver.submit(ResolutionExecutor.cycleKey(cur), () -> attemptSimpleResolution(cur, infos, ev))) {
+                        ev.addResolutionStep("Resolution not scheduled (already in progress or queue full)");
                     }
                 }
                 knownDeadlockedThreads.addAll(cur);
             }
 
+            heavyDumpNanos.addAndGet(dumpElapsed);
+            heavyDumpCount.incrementAndGet();
+            dumpSeconds.recordNanos(dumpElapsed);
+
             // add minimal resolution history to snapshot for UI convenience
             Map<String, Object> extra = new HashMap<>();
             extra.put("totalResolutions", resolutionCounter.get());
             extra.put("activeDeadlocks", knownDeadlockedThreads.size());
+            extra.put("waitingThreads", waitForGraph.waiterCount());
+            extra.put("graphVersion", waitForGraph.version());
+            extra.put("graphChanges", waitForGraph.lastChangeCount());
+            extra.put("graphCycles", waitForGraph.cycleCount());
+            extra.put("condensedThreads", condensed);
             snapshot.setAdditionalData(extra);
 
-            // save last snapshot and return
-            lastSnapshot = snapshot;
+            // publish the finished capture in one step and return
+            lastCapture.set(new Capture(snapshot, probeIds, now, probeStart, threadCount, 0));
+            detectSeconds.recordNanos(System.nanoTime() - probeStart);
+            if (recovered) {
+                // push the healthy snapshot right away so the UI turns green
+                snapshotPublisher.publish(snapshot);
+            }
             return snapshot;
 
         } catch (Exception e) {
             System.err.println("Error in detectDeadlocks: " + e.getMessage());
             DeadlockSnapshot s = new DeadlockSnapshot();
             s.setDeadlockDetected(false);
-            s.setAdditionalData(Map.of("error", e.getMessage()));
-            lastSnapshot = s;
+            s.setAdditionalData(Map.of("error", String.valueOf(e.getMessage())));
+            // no probe ids: forces a full dump on the next tick
+            lastCapture.set(new Capture(s, null, 0, probeStart, -1, 0));
             return s;
         }
     }
 
     /**
-     * Attempt a simple resolution: interrupt one candidate thread (best-effort, only works for same JVM).
+     * Contention seen between polls (JFR event stream): probe the local JVM early.
+     */
+    public void onContentionEvent(String reason) {
+        sampleRequested = true; // the early probe must look at thread states, not only the deadlock set
+        localPolling.onContention(System.currentTimeMillis(), reason);
+    }
+
+    /**
+     * Persistent wait-for graph of the local JVM.
+     */
+    public WaitForGraph getWaitForGraph() {
+        return waitForGraph;
+    }
+
+    /**
+     * Cost of the cheap probe vs the full dump, and the dump time avoided by tiered detection.
+     * Both ThreadMXBean calls bring the target to a safepoint, so the avoided dump time is
+     * an estimate of the stop-the-world time saved.
+     */
+    public Map<String, Object> getDetectionMetrics() {
+        long probes = probeCount.get();
+        long dumps = heavyDumpCount.get();
+        long skipped = skippedDumpCount.get();
+        long avgProbeNanos = probes == 0 ? 0 : probeNanos.get() / probes;
+        long avgDumpNanos = dumps == 0 ? 0 : heavyDumpNanos.get() / dumps;
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("tieredDetection", tieredDetection);
+        metrics.put("heavySampleIntervalMs", heavySampleIntervalMs);
+        metrics.put("fullSampleEvery", fullSampleEvery);
+        metrics.put("probes", probes);
+        metrics.put("heavyDumps", dumps);
+        metrics.put("skippedDumps", skipped);
+        metrics.put("captures", capturesRun.sum());
+        metrics.put("joinedCaptures", capturesJoined.sum());
+        metrics.put("reusedCaptures", capturesReused.sum());
+        metrics.put("coalesceWindowMs", coalesceWindowMs);
+        metrics.put("avgProbeMicros", TimeUnit.NANOSECONDS.toMicros(avgProbeNanos));
+        metrics.put("avgHeavyDumpMicros", TimeUnit.NANOSECONDS.toMicros(avgDumpNanos));
+        metrics.put("estimatedSafepointSavedMillis", TimeUnit.NANOSECONDS.toMillis(skipped * avgDumpNanos));
+        metrics.put("polling", localPolling.toMap());
+        metrics.put("resolution", resolver.toMap());
+        metrics.put("strategies", victimSelector.toMap());
+        return metrics;
+    }
+
+    /**
+     * Attempt a resolution: interrupt the cheapest victim picked by {@link VictimSelector}
+     * (best-effort, only works for same JVM), then verify the cycle is gone.
      */
     private void attemptSimpleResolution(Set<Long> deadlockedThreads, ThreadInfo[] infos, DeadlockEvent event) {
-        event.addResolutionStep("Attempting simple interruption of a candidate thread");
+        String strategy = VictimSelector.INTERRUPT;
         try {
-            // choose the first deadlocked thread's id (best-effort)
-            long targetId = -1;
-            for (ThreadInfo ti : infos) {
-                if (ti != null) { targetId = ti.getThreadId(); break; }
+            // score the cycle as it is now, not as it was at detection time
+            ThreadInfo[] current = threadMXBean.getThreadInfo(
+                    deadlockedThreads.stream().mapToLong(Long::longValue).toArray(), true, true);
+            VictimSelector.Candidate victim = victimSelector.select(current);
+            if (victim == null) {
+                victim = victimSelector.select(infos);
             }
-            if (targetId == -1) {
+            if (victim == null) {
                 event.addResolutionStep("No candidate found for interruption");
                 recordResolution("NONE", deadlockedThreads, "FAILED", "No candidate", 0);
                 return;
             }
+            strategy = victim.strategy();
+            event.addResolutionStep("Selected victim " + victim);
 
             // find Thread object and interrupt
-            Thread target = findThreadById(targetId);
+            Thread target = findThreadById(victim.threadId);
             if (target != null) {
                 target.interrupt();
-                event.addResolutionStep("Interrupted thread id=" + targetId);
-                recordResolution("INTERRUPT", deadlockedThreads, "SUCCESS", "Interrupted thread " + target.getName(), 200);
+                event.addResolutionStep("Interrupted thread id=" + victim.threadId);
+                if (!awaitCleared(deadlockedThreads)) {
+                    victimSelector.recordOutcome(strategy, false);
+                    event.addResolutionStep("Cycle still present " + verifyTimeoutMs + " ms after the interrupt");
+                    recordResolution(strategy, deadlockedThreads, "FAILED",
+                            "Interrupting " + target.getName() + " did not break the cycle", verifyTimeoutMs);
+                    return;
+                }
                 // mark resolved and broadcast
-                event.markResolved("INTERRUPT");
+                victimSelector.recordOutcome(strategy, true);
+                event.markResolved(strategy);
+                recordRecovery(event.totalResolutionTime);
+                recordResolution(strategy, deadlockedThreads, "SUCCESS", "Interrupted thread " + target.getName(), event.totalResolutionTime);
                 knownDeadlockedThreads.removeAll(deadlockedThreads);
                 broadcastResolutionUpdate("RESOLVED", "Deadlock cleared by interrupting a thread");
                 // publish fresh snapshot
-                DeadlockSnapshot fresh = detectDeadlocks();
-                messagingTemplate.convertAndSend("/topic/deadlock", fresh);
+                DeadlockSnapshot fresh = detectDeadlocksFresh();
+                snapshotPublisher.publish(fresh);
             } else {
                 event.addResolutionStep("Target thread object not found to interrupt");
-                recordResolution("INTERRUPT", deadlockedThreads, "FAILED", "Thread object missing", 0);
+                recordResolution(strategy, deadlockedThreads, "FAILED", "Thread object missing", 0);
             }
 
         } catch (Exception e) {
             event.addResolutionStep("Resolution attempt failed: " + e.getMessage());
-            recordResolution("INTERRUPT", deadlockedThreads, "FAILED", e.getMessage(), 0);
+            recordResolution(strategy, deadlockedThreads, "FAILED", e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Verification loop after an intervention: probe every verifyIntervalMs until none of the
+     * cycle's threads is deadlocked any more, or verifyTimeoutMs has passed.
+     */
+    private boolean awaitCleared(Set<Long> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(verifyTimeoutMs);
+        while (true) {
+            long[] ids = threadMXBean.findDeadlockedThreads();
+            boolean stillDeadlocked = false;
+            if (ids != null) {
+                for (long id : ids) {
+                    if (threads.contains(id)) { stillDeadlocked = true; break; }
+                }
+            }
+            if (!stillDeadlocked) {
+                return true;
+            }
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(verifyIntervalMs);
         }
     }
 
@@ -358,8 +732,15 @@ public class DeadlockService{
      */
     private void recordResolution(String method, Set<Long> threads, String status, String details, long timeMs) {
         ResolutionEvent re = new ResolutionEvent(method, threads, status, details, timeMs);
-        long key = resolutionCounter.incrementAndGet();
-        resolutionHistory.put(key, re);
+        resolutionHistory.append(re);
+        journal.appendResolution(re);
+        resolutionCounter.incrementAndGet();
+        totalResolutionMillis.addAndGet(timeMs);
+        if ("SUCCESS".equals(status)) {
+            successfulResolutions.incrementAndGet();
+        } else {
+            failedResolutions.incrementAndGet();
+        }
         System.out.println("Resolution recorded: " + method + " -> " + status);
     }
 
@@ -374,34 +755,39 @@ public class DeadlockService{
     }
 
     /**
-     * Mark current deadlocks as resolved and notify the UI.
+     * Mark current deadlocks as resolved and notify the UI. Runs inside a capture, which then
+     * publishes its own snapshot when this returns true.
      */
-    private void markCurrentDeadlocksResolved() {
-        if (!deadlockEvents.isEmpty()) {
-            DeadlockEvent last = deadlockEvents.get(deadlockEvents.size() - 1);
-            if (!last.wasResolved) {
+    private boolean markCurrentDeadlocksResolved() {
+        DeadlockEvent last = deadlockEvents.latest();
+        if (last != null) {
+            // a resolution in progress records its own outcome once verified
+            if (!last.wasResolved && !resolver.isInFlight(ResolutionExecutor.cycleKey(last.deadlockedThreads))) {
                 last.markResolved("AUTOMATIC_RECOVERY");
                 last.addResolutionStep("System recovered automatically");
+                recordRecovery(last.totalResolutionTime);
                 recordResolution("AUTOMATIC_RECOVERY", last.deadlockedThreads, "SUCCESS", "Auto resolved", last.totalResolutionTime);
                 broadcastResolutionUpdate("RESOLVED", "All known deadlocks have been resolved");
-                // push an updated snapshot so UI turns healthy
-                DeadlockSnapshot fresh = detectDeadlocks();
-                messagingTemplate.convertAndSend("/topic/deadlock", fresh);
+                return true;
             }
         }
+        return false;
     }
 
     // ---- scheduled monitor that publishes only when changed ----
 
-    @Scheduled(fixedRate = 2000)
+    @Scheduled(fixedRateString = "${deadlock.polling.tick-ms:100}")
     public void monitorDeadlocks() {
+        if (!localPolling.tryClaim(System.currentTimeMillis())) {
+            return;
+        }
         try {
             DeadlockSnapshot snapshot = detectDeadlocks();
-            // only publish when state changed or at first run
-            if (lastSnapshot == null || lastSnapshot.isDeadlockDetected() != snapshot.isDeadlockDetected()
-                    || lastSnapshot.getThreads().size() != snapshot.getThreads().size()) {
-                lastSnapshot = snapshot;
-                messagingTemplate.convertAndSend("/topic/deadlock", snapshot);
+            // the publisher compares structural hashes, so only real changes are pushed
+            long publishStart = System.nanoTime();
+            boolean sent = snapshotPublisher.publish(snapshot);
+            publishSeconds.recordNanos(System.nanoTime() - publishStart);
+            if (sent) {
                 if (snapshot.isDeadlockDetected()) {
                     System.out.println("Published deadlock state -> DETECTED");
                 } else {
@@ -413,6 +799,135 @@ public class DeadlockService{
         }
     }
 
+    /**
+     * Publish every remote poll on the process's delta stream; only real changes go out.
+     */
+    private void publishRemoteResult(JMXProcessMonitor.DeadlockInfo info) {
+        DeadlockSnapshot snapshot;
+        if (info.hasDeadlock) {
+            snapshot = DeadlockSnapshot.from(info.threadInfos);
+        } else if (info.sample != null) {
+            snapshot = new DeadlockSnapshot();
+            ThreadSample sample = info.sample;
+            Set<Long> onWaitPath = new HashSet<>();
+            for (int i = 0; i < sample.size(); i++) {
+                DeadlockSnapshot.ThreadData td = new DeadlockSnapshot.ThreadData();
+                td.id = sample.id(i);
+                td.name = sample.name(i);
+                td.state = sample.state(i).toString();
+                if (sample.frames(i).length > 0) {
+                    td.frames = frameDictionary.intern(sample.frames(i), 10);
+                }
+                snapshot.getThreads().add(td);
+                snapshot.mixThread(td.id, sample.state(i), sample.isWaiting(i), sample.lockHash(i));
+                if (sample.isWaiting(i) && sample.owner(i) >= 0) {
+                    onWaitPath.add(td.id);
+                    onWaitPath.add(sample.owner(i));
+                }
+            }
+            condense(snapshot, onWaitPath);
+            snapshot.addWaitGraph(jmxMonitor.graphFor(info.pid));
+        } else {
+            snapshot = new DeadlockSnapshot();
+            Set<Long> onWaitPath = new HashSet<>();
+            for (ThreadInfo ti : info.threadInfos) {
+                if (ti == null) continue;
+                DeadlockSnapshot.ThreadData td = new DeadlockSnapshot.ThreadData();
+                td.id = ti.getThreadId();
+                td.name = ti.getThreadName();
+                td.state = ti.getThreadState().toString();
+                snapshot.getThreads().add(td);
+                snapshot.mixThread(ti);
+                addWaitPath(onWaitPath, ti);
+            }
+            condense(snapshot, onWaitPath);
+            snapshot.addWaitGraph(jmxMonitor.graphFor(info.pid));
+        }
+        snapshot.getAdditionalData().put("pid", info.pid);
+        if (info.liveThreads >= 0) {
+            // polled through the wait-graph MBean: only waiters and owners were fetched
+            snapshot.getAdditionalData().put("liveThreads", info.liveThreads);
+        }
+        snapshotPublisher.publish(info.pid, snapshot);
+
+        Boolean previous = remoteDeadlockState.put(info.pid, info.hasDeadlock);
+        if (previous == null || previous != info.hasDeadlock) {
+            System.out.println("Published PID " + info.pid + " deadlock state -> " + (info.hasDeadlock ? "DETECTED" : "CLEAR"));
+        }
+    }
+
+    /**
+     * A target stopped being monitored: drop its stream, so a re-added PID starts with a full
+     * snapshot instead of a delta against the old one.
+     */
+    private void forgetRemoteTarget(String pid) {
+        snapshotPublisher.reset(pid);
+        remoteDeadlockState.remove(pid);
+    }
+
+    /**
+     * A thread waiting on an owned lock and the owner both stay individual nodes. Idle pool
+     * threads parked on an unowned queue condition are not on a wait-for path and may be grouped.
+     */
+    private static void addWaitPath(Set<Long> onWaitPath, ThreadInfo ti) {
+        if (ti.getLockInfo() != null && ti.getLockOwnerId() >= 0) {
+            onWaitPath.add(ti.getThreadId());
+            onWaitPath.add(ti.getLockOwnerId());
+        }
+    }
+
+    private void condense(DeadlockSnapshot snapshot, Set<Long> onWaitPath) {
+        int condensed = ThreadCondenser.condense(snapshot, onWaitPath, condenseThreshold, condenseMinGroupSize);
+        snapshot.getAdditionalData().put("condensedThreads", condensed);
+    }
+
+    /**
+     * One page of the members of a thread group in the last snapshot published on a stream,
+     * or null when the stream or group is unknown.
+     */
+    public Map<String, Object> getThreadGroupPage(String stream, String groupId, int page, int size) {
+        DeadlockSnapshot snapshot = snapshotPublisher.latest(stream);
+        if (snapshot == null) {
+            return null;
+        }
+        for (DeadlockSnapshot.ThreadGroupData group : snapshot.getThreadGroups()) {
+            if (!group.id.equals(groupId)) continue;
+            int from = Math.min(Math.max(0, page) * Math.max(0, size), group.members.size());
+            int to = Math.min(from + Math.max(0, size), group.members.size());
+            Map<String, Object> ret = new HashMap<>();
+            ret.put("stream", stream);
+            ret.put("sequence", snapshot.getSequence());
+            ret.put("group", group.id);
+            ret.put("pattern", group.pattern);
+            ret.put("state", group.state);
+            ret.put("count", group.count);
+            ret.put("page", page);
+            ret.put("size", size);
+            List<DeadlockSnapshot.ThreadData> members = group.members.subList(from, to);
+            Map<Integer, String> frameTable = new HashMap<>();
+            for (DeadlockSnapshot.ThreadData t : members) {
+                for (int id : t.frames) {
+                    String frame = frameDictionary.frame(id);
+                    if (frame != null) frameTable.put(id, frame);
+                }
+            }
+            ret.put("threads", members);
+            ret.put("frameTable", frameTable);
+            return ret;
+        }
+        return null;
+    }
+
+    private void recordRecovery(long millis) {
+        resolver.recordRecovery(millis);
+        recoverySeconds.recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resolver.shutdown();
+    }
+
     // ---- simple helpers for controllers to set which process to monitor (if you use JMX) ----
     public void setMonitoredProcess(String pid) { this.selectedProcessPid = pid; }
     public String getMonitoredProcess() { return this.selectedProcessPid; }
@@ -434,7 +949,8 @@ public class DeadlockService{
         }
         ThreadInfo[] infos = threadMXBean.getThreadInfo(ids, true, true);
         DeadlockEvent ev = new DeadlockEvent(new HashSet<>(knownDeadlockedThreads));
-        deadlockEvents.add(ev);
+        deadlockEvents.append(ev);
+        journal.appendDeadlock(ev);
         attemptSimpleResolution(new HashSet<>(knownDeadlockedThreads), infos, ev);
         res.put("success", true);
         res.put("message", "Manual resolution attempted");
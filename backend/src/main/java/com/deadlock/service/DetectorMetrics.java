@@ -0,0 +1,259 @@
+package com.deadlock.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Instrumentation of the detector itself: histograms, counters and gauges per pipeline stage and
+ * per target, served in Prometheus text format on {@code /api/metrics} and over JMX as
+ * {@code com.deadlock:type=DetectorMetrics}.
+ *
+ * Histograms have fixed power-of-two buckets, so recording is one {@code numberOfLeadingZeros},
+ * one atomic increment and one {@link LongAdder} add: no locks and no allocation. Callers look a
+ * series up once and keep the handle; the registry map is only touched on creation and scrape.
+ */
+@Service
+@ManagedResource(objectName = "com.deadlock:type=DetectorMetrics", description = "Deadlock detector internals")
+public class DetectorMetrics {
+
+    // bucket k counts values <= 2^k (k = 0..MAX_EXPONENT), the last one everything above
+    private static final int MAX_EXPONENT = 24;
+    private static final int BUCKETS = MAX_EXPONENT + 2;
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Latency histogram in seconds, recorded from nanoseconds with microsecond resolution
+     * (buckets 1 us .. 16.8 s).
+     */
+    public Histogram timer(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").series.computeIfAbsent(labelText(labels),
+                l -> new Histogram(1e6));
+    }
+
+    /**
+     * Histogram of a plain quantity (threads, bytes, ...), buckets 1 .. 2^24.
+     */
+    public Histogram sizes(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").series.computeIfAbsent(labelText(labels),
+                l -> new Histogram(1));
+    }
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "counter").series.computeIfAbsent(labelText(labels),
+                l -> new LongAdder());
+    }
+
+    /**
+     * Value read at scrape time.
+     */
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(labelText(labels), value);
+    }
+
+    /**
+     * Drop every series carrying {@code label="value"}, e.g. when a target is no longer monitored.
+     */
+    public void removeSeries(String label, String value) {
+        String needle = label + "=\"" + escape(value) + "\"";
+        for (Family family : families.values()) {
+            family.series.keySet().removeIf(labels -> labels.contains(needle));
+        }
+    }
+
+    /**
+     * Prometheus text exposition format (0.0.4).
+     */
+    @ManagedOperation(description = "All metrics in Prometheus text format")
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        families.forEach((name, family) -> {
+            if (family.series.isEmpty()) return;
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            family.series.forEach((labels, series) -> {
+                if (series instanceof Histogram h) {
+                    h.writeTo(out, name, labels);
+                } else if (series instanceof LongAdder c) {
+                    sample(out, name, labels, null, c.sum());
+                } else if (series instanceof LongSupplier g) {
+                    sample(out, name, labels, null, g.getAsLong());
+                }
+            });
+        });
+        return out.toString();
+    }
+
+    /**
+     * Count, mean and estimated p50 / p99 of every histogram, plus counters and gauges.
+     */
+    @ManagedAttribute(description = "Summary of every series")
+    public Map<String, Object> getSummary() {
+        Map<String, Object> summary = new HashMap<>();
+        families.forEach((name, family) -> family.series.forEach((labels, series) -> {
+            String key = labels.isEmpty() ? name : name + "{" + labels + "}";
+            if (series instanceof Histogram h) {
+                summary.put(key, h.toMap());
+            } else if (series instanceof LongAdder c) {
+                summary.put(key, c.sum());
+            } else if (series instanceof LongSupplier g) {
+                summary.put(key, g.getAsLong());
+            }
+        }));
+        return summary;
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is a " + family.type + ", not a " + type);
+        }
+        return family;
+    }
+
+    private static String labelText(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be name/value pairs");
+        }
+        List<String> pairs = new ArrayList<>(labels.length / 2);
+        for (int i = 0; i < labels.length; i += 2) {
+            pairs.add(labels[i] + "=\"" + escape(labels[i + 1]) + "\"");
+        }
+        return String.join(",", pairs);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String extraLabel, Number value) {
+        out.append(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            out.append('{').append(labels);
+            if (extraLabel != null) {
+                if (!labels.isEmpty()) out.append(',');
+                out.append(extraLabel);
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value instanceof Double d) {
+            out.append(format(d));
+        } else {
+            out.append(value.longValue());
+        }
+        out.append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isInfinite(value)) return "+Inf";
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+
+    /**
+     * One metric name: its help text, type and series by label set
+     */
+    private static class Family {
+        final String help;
+        final String type;
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Lock-free histogram with power-of-two buckets
+     */
+    public static class Histogram {
+        // recorded units per rendered unit (1e6: microseconds recorded, seconds rendered)
+        private final double unitsPerValue;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+
+        Histogram(double unitsPerValue) {
+            this.unitsPerValue = unitsPerValue;
+        }
+
+        /**
+         * Record a duration; the histogram keeps microseconds.
+         */
+        public void recordNanos(long nanos) {
+            record(nanos / 1000);
+        }
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            int bucket = value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+            buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+            sum.add(value);
+        }
+
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile, in rendered units.
+         */
+        public double quantile(double q) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+
+        Map<String, Object> toMap() {
+            long count = count();
+            Map<String, Object> map = new HashMap<>();
+            map.put("count", count);
+            map.put("mean", count == 0 ? 0.0 : sum.sum() / unitsPerValue / count);
+            map.put("p50", quantile(0.5));
+            map.put("p99", quantile(0.99));
+            return map;
+        }
+
+        void writeTo(StringBuilder out, String name, String labels) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += buckets.get(i);
+                sample(out, name + "_bucket", labels, "le=\"" + format(upperBound(i)) + "\"", cumulative);
+            }
+            sample(out, name + "_sum", labels, null, sum.sum() / unitsPerValue);
+            sample(out, name + "_count", labels, null, cumulative);
+        }
+
+        private double upperBound(int bucket) {
+            return bucket == BUCKETS - 1 ? Double.POSITIVE_INFINITY : (1L << bucket) / unitsPerValue;
+        }
+    }
+}
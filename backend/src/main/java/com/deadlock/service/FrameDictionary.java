@@ -0,0 +1,76 @@
+package com.deadlock.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Global stack-frame dictionary shared by all snapshots.
+ *
+ * Frames are interned to int ids so snapshots carry {@code int[]} stacks instead of re-rendering
+ * the same strings every tick. Ids are handed out in increasing order and never reused, so a
+ * publisher can tell from the ids alone which frame texts a client already holds.
+ * The dictionary is LRU-bounded; an evicted frame gets a fresh id if it shows up again.
+ */
+@Service
+public class FrameDictionary {
+
+    private final int capacity;
+    private final LinkedHashMap<StackTraceElement, Integer> ids;
+    private final Map<Integer, String> frames = new ConcurrentHashMap<>();
+    private int nextId = 1;
+
+    public FrameDictionary(@Value("${deadlock.frames.capacity:8192}") int capacity) {
+        this.capacity = capacity;
+        this.ids = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StackTraceElement, Integer> eldest) {
+                if (size() > FrameDictionary.this.capacity) {
+                    frames.remove(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Intern the top {@code maxDepth} frames of a stack.
+     */
+    public synchronized int[] intern(StackTraceElement[] stack, int maxDepth) {
+        int depth = stack == null ? 0 : Math.min(stack.length, maxDepth);
+        int[] result = new int[depth];
+        for (int i = 0; i < depth; i++) {
+            StackTraceElement frame = stack[i];
+            Integer id = ids.get(frame);
+            if (id == null) {
+                id = nextId++;
+                ids.put(frame, id);
+                frames.put(id, frame.toString());
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    /**
+     * Text of a frame id, or null if it was evicted.
+     */
+    public String frame(int id) {
+        return frames.get(id);
+    }
+
+    /**
+     * Highest id handed out so far.
+     */
+    public synchronized int lastId() {
+        return nextId - 1;
+    }
+
+    public int size() {
+        return frames.size();
+    }
+}
@@ -1,23 +1,42 @@
 package com.deadlock.service;
 
+import java.io.File;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import javax.management.MBeanServerConnection;
-import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXConnectorFactory;
-import javax.management.remote.JMXServiceURL;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.deadlock.model.ThreadSample;
+import com.deadlock.model.WaitForGraph;
+
 import com.sun.tools.attach.VirtualMachine;
-import com.sun.tools.attach.VirtualMachineDescriptor;
+
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service to monitor external Java processes via JMX
@@ -26,204 +45,656 @@ import com.sun.tools.attach.VirtualMachineDescriptor;
 @Service
 public class JMXProcessMonitor {
     
-    private static final String CONNECTOR_ADDRESS = 
-        "com.sun.management.jmxremote.localConnectorAddress";
+    // Registered in the target by the lock-order agent (agent/ module)
+    private static final String LOCK_ORDER_MBEAN = "com.deadlock.agent:type=LockOrder";
+    // Compact in-target wait-for graph, same agent; layout documented on agent's WaitGraphMXBean
+    private static final String WAIT_GRAPH_MBEAN = "com.deadlock.agent:type=WaitGraph";
+    private static final int WAIT_GRAPH_HEADER = 4;
+    private static final int WAIT_GRAPH_RECORD = 4;
+    private static final long WAIT_GRAPH_RECHECK_MS = 30000;
+    private static final String[] GET_THREAD_INFO_SIGNATURE = {long[].class.getName(), int.class.getName()};
+    
+    // remote calls timed per target, index into TargetStatus.callSeconds
+    private static final String[] CALLS = {"findDeadlockedThreads", "getThreadInfo", "waitGraph.poll"};
+    private static final int FIND_DEADLOCKED = 0;
+    private static final int GET_THREAD_INFO = 1;
+    private static final int WAIT_GRAPH_POLL = 2;
+    
+    // Connections are opened and health-checked in the background; polls never attach
+    private final JmxConnectionManager connections;
+    private final DetectorMetrics metrics;
+    
+    // Multi-process polling: one virtual thread per target, each bounded by its own deadline
+    private final Set<String> monitoredPids = ConcurrentHashMap.newKeySet();
+    private final Map<String, Future<?>> inFlightPolls = new ConcurrentHashMap<>();
+    private final Map<String, DeadlockInfo> latestResults = new ConcurrentHashMap<>();
+    private final Map<String, TargetStatus> targetStatus = new ConcurrentHashMap<>();
+    private final Map<String, WaitForGraph> waitForGraphs = new ConcurrentHashMap<>();
+    private final List<Consumer<DeadlockInfo>> pollListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> stopListeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService pollExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService pollWatchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "JMXPollWatchdog");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    @Value("${deadlock.jmx.target-deadline-ms:1500}")
+    private long targetDeadlineMs = 1500;
     
-    private final Map<String, JMXConnector> activeConnections = new ConcurrentHashMap<>();
-    private Map<String, ThreadMXBean> threadBeans = new ConcurrentHashMap<>();
+    // Adaptive per-target polling: each target keeps its own interval within [min, max]
+    @Value("${deadlock.polling.initial-interval-ms:2000}")
+    private long initialIntervalMs = 2000;
+    @Value("${deadlock.polling.min-interval-ms:250}")
+    private long minIntervalMs = 250;
+    @Value("${deadlock.polling.max-interval-ms:5000}")
+    private long maxIntervalMs = 5000;
+    @Value("${deadlock.polling.hot-window-ms:10000}")
+    private long hotWindowMs = 10000;
+    
+    // Optional lock-order agent jar, loaded into targets on request
+    @Value("${deadlock.agent.jar:}")
+    private String agentJar = "";
+    @Value("${deadlock.agent.options:}")
+    private String agentOptions = "";
+    
+    // Poll through the wait-graph MBean when the target has it; optionally inject it on startMonitoring
+    @Value("${deadlock.jmx.compact-graph:true}")
+    private boolean compactGraph = true;
+    @Value("${deadlock.jmx.inject-graph-agent:false}")
+    private boolean injectGraphAgent = false;
+    
+    // Stack frames kept per thread in the no-deadlock sample (0: none, the remote side skips stacks too)
+    @Value("${deadlock.jmx.sample-frames:0}")
+    private int sampleFrames = 0;
+    
+    // How long on-demand requests (agent report, thread dump) wait for a connection
+    @Value("${deadlock.jmx.connect-wait-ms:5000}")
+    private long connectWaitMs = 5000;
+    
+    public JMXProcessMonitor(JmxConnectionManager connections, DetectorMetrics metrics) {
+        this.connections = connections;
+        this.metrics = metrics;
+        metrics.gauge("deadlock_monitored_targets", "Remote JVMs being polled", monitoredPids::size);
+    }
     
     /**
-     * Scan for all running Java processes on the system
+     * Polling interval bounds for targets added from now on (the deadlock.polling.* properties),
+     * for use outside Spring such as benchmarks and harnesses.
      */
-    public List<JavaProcessInfo> scanJavaProcesses() {
-        List<JavaProcessInfo> processes = new ArrayList<>();
-        
-        try {
-            List<VirtualMachineDescriptor> vms = VirtualMachine.list();
-            
-            for (VirtualMachineDescriptor vmd : vms) {
-                try {
-                    String pid = vmd.id();
-                    String displayName = vmd.displayName();
-                    
-                    // Skip our own Spring Boot process
-                    if (displayName.contains("DeadlockApplication") || 
-                        displayName.contains("spring-boot") ||
-                        displayName.isEmpty()) {
-                        continue;
-                    }
-                    
-                    processes.add(new JavaProcessInfo(pid, displayName));
-                    System.out.println("📋 Found Java process: " + displayName + " (PID: " + pid + ")");
-                    
-                } catch (Exception e) {
-                    System.err.println("⚠️ Error scanning process: " + e.getMessage());
-                }
-            }
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error listing Java processes: " + e.getMessage());
-        }
-        
-        return processes;
+    public void configurePolling(long initialIntervalMs, long minIntervalMs, long maxIntervalMs) {
+        this.initialIntervalMs = initialIntervalMs;
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+    }
+    
+    /**
+     * Wait-graph MBean use (deadlock.jmx.compact-graph, deadlock.jmx.inject-graph-agent, deadlock.agent.jar)
+     */
+    public void configureWaitGraph(boolean compactGraph, boolean injectGraphAgent, String agentJar) {
+        this.compactGraph = compactGraph;
+        this.injectGraphAgent = injectGraphAgent;
+        this.agentJar = agentJar;
+    }
+    
+    /**
+     * How long on-demand requests wait for a connection (deadlock.jmx.connect-wait-ms)
+     */
+    public void configureConnectWait(long connectWaitMs) {
+        this.connectWaitMs = connectWaitMs;
     }
     
     /**
-     * Connect to a specific Java process via JMX and get its ThreadMXBean
+     * Connect to a specific Java process via JMX and get its ThreadMXBean.
+     * Returns at once when the connection is warm, otherwise waits up to connect-wait-ms.
      */
     public ThreadMXBean connectToProcess(String pid) throws Exception {
-        // Check if already connected
-        if (threadBeans.containsKey(pid)) {
-            return threadBeans.get(pid);
+        return connections.awaitConnected(pid, connectWaitMs);
+    }
+    
+    /**
+     * Load the lock-order agent into a process through the attach API.
+     * The agent records lock acquisition order and reports inversions before they deadlock.
+     */
+    public void loadLockOrderAgent(String pid) throws Exception {
+        loadAgent(pid, agentOptions);
+        TargetStatus st = targetStatus.get(pid);
+        if (st != null) {
+            st.waitGraph = null; // the agent also registers the wait-graph MBean
+        }
+    }
+    
+    /**
+     * Load only the wait-graph MBean of the agent (no lock-order instrumentation).
+     */
+    public void loadWaitGraphAgent(String pid) throws Exception {
+        loadAgent(pid, "lockorder=false");
+        TargetStatus st = targetStatus.get(pid);
+        if (st != null) {
+            st.waitGraph = null;
+        }
+    }
+    
+    private void loadAgent(String pid, String options) throws Exception {
+        if (agentJar == null || agentJar.isBlank()) {
+            throw new IllegalStateException("Lock-order agent not configured (set deadlock.agent.jar)");
+        }
+        File jar = new File(agentJar);
+        if (!jar.isFile()) {
+            throw new IllegalStateException("Lock-order agent jar not found: " + jar.getAbsolutePath());
         }
         
-        VirtualMachine vm = null;
+        VirtualMachine vm = VirtualMachine.attach(pid);
         try {
-            System.out.println("🔌 Connecting to process PID: " + pid);
-            
-            // Attach to the target JVM
-            vm = VirtualMachine.attach(pid);
-            
-            // Get or create JMX connector address
-            String connectorAddr = vm.getAgentProperties().getProperty(CONNECTOR_ADDRESS);
-            
-            if (connectorAddr == null) {
-                // ✅ FIXED: Use startLocalManagementAgent() instead of loading jar file
-                System.out.println("🔧 Starting local management agent for PID: " + pid);
-                
-                try {
-                    // This method starts the management agent without needing the jar file
-                    connectorAddr = vm.startLocalManagementAgent();
-                    System.out.println("✅ Management agent started successfully");
-                } catch (Exception e) {
-                    System.err.println("⚠️ Could not start management agent: " + e.getMessage());
-                    throw new RuntimeException(
-                        "Failed to start JMX agent for PID: " + pid + 
-                        ". Please run target process with: java -Dcom.sun.management.jmxremote YourClass"
-                    );
-                }
-                
-                // Wait a bit for agent to fully start
-                Thread.sleep(500);
-                
-                // Verify we got the connector address
-                if (connectorAddr == null || connectorAddr.isEmpty()) {
-                    connectorAddr = vm.getAgentProperties().getProperty(CONNECTOR_ADDRESS);
-                    if (connectorAddr == null) {
-                        throw new RuntimeException("Failed to obtain JMX connector address for PID: " + pid);
-                    }
-                }
-            }
-            
-            // Connect via JMX
-            JMXServiceURL url = new JMXServiceURL(connectorAddr);
-            JMXConnector connector = JMXConnectorFactory.connect(url);
-            activeConnections.put(pid, connector);
-            
-            // Get MBean server connection
-            MBeanServerConnection mbsc = connector.getMBeanServerConnection();
-            
-            // Get ThreadMXBean from remote process
-            ThreadMXBean threadBean = ManagementFactory.newPlatformMXBeanProxy(
-                mbsc, 
-                ManagementFactory.THREAD_MXBEAN_NAME, 
-                ThreadMXBean.class
-            );
-            
-            threadBeans.put(pid, threadBean);
-            
-            System.out.println("✅ Connected to process PID: " + pid);
-            
-            return threadBean;
-            
+            System.out.println("🧬 Loading agent into PID: " + pid + " (" + options + ")");
+            vm.loadAgent(jar.getAbsolutePath(), options);
         } finally {
-            if (vm != null) {
-                try {
-                    vm.detach();
-                } catch (Exception e) {
-                    // Ignore detach errors
-                }
-            }
+            vm.detach();
+        }
+    }
+    
+    /**
+     * Lock-order report published by the agent in a process
+     */
+    public Map<String, Object> getLockOrderReport(String pid) throws Exception {
+        connectToProcess(pid);
+        MBeanServerConnection mbsc = connections.mbeanConnection(pid);
+        if (mbsc == null) {
+            throw new IllegalStateException("Not connected to PID " + pid);
+        }
+        ObjectName name = new ObjectName(LOCK_ORDER_MBEAN);
+        
+        Map<String, Object> report = new HashMap<>();
+        report.put("pid", pid);
+        if (!mbsc.isRegistered(name)) {
+            report.put("agentLoaded", false);
+            return report;
         }
+        report.put("agentLoaded", true);
+        report.put("edgeCount", mbsc.getAttribute(name, "EdgeCount"));
+        report.put("droppedEvents", mbsc.getAttribute(name, "DroppedEvents"));
+        report.put("inversions", mbsc.getAttribute(name, "Inversions"));
+        report.put("potentialDeadlocks", mbsc.getAttribute(name, "PotentialDeadlocks"));
+        return report;
     }
     
     /**
      * Check a specific process for deadlocks
      */
     public DeadlockInfo checkProcessForDeadlocks(String pid) {
+        ThreadMXBean threadBean = connections.threadBean(pid);
+        if (threadBean == null) {
+            return null; // not connected (yet): the manager attaches in the background
+        }
         try {
-            ThreadMXBean threadBean = connectToProcess(pid);
+            TargetStatus st = targetStatus.get(pid);
+            if (st != null && usesWaitGraph(pid, st)) {
+                return checkWaitGraph(pid, threadBean, st);
+            }
             
             // Find deadlocked threads
+            long callStart = System.nanoTime();
             long[] deadlockedThreadIds = threadBean.findDeadlockedThreads();
+            recordCall(st, FIND_DEADLOCKED, callStart);
             
             if (deadlockedThreadIds != null && deadlockedThreadIds.length > 0) {
                 System.out.println("🔴 DEADLOCK DETECTED in PID " + pid + "! Threads: " + Arrays.toString(deadlockedThreadIds));
                 
                 // Get detailed thread information
+                callStart = System.nanoTime();
                 ThreadInfo[] threadInfos = threadBean.getThreadInfo(
                     deadlockedThreadIds, 
                     true,  // locked monitors
                     true   // locked synchronizers
                 );
+                recordCall(st, GET_THREAD_INFO, callStart);
                 
+                graphFor(pid).apply(threadInfos, false);
                 return new DeadlockInfo(pid, true, threadInfos, threadBean);
             } else {
-                // No deadlock, but get all thread info for dashboard
-                long[] allThreadIds = threadBean.getAllThreadIds();
-                ThreadInfo[] allThreadInfos = threadBean.getThreadInfo(allThreadIds, false, false);
+                // No deadlock, but sample all threads for the dashboard and the wait-for graph
+                callStart = System.nanoTime();
+                ThreadSample sample = sampleThreads(pid);
+                recordCall(st, GET_THREAD_INFO, callStart);
+                if (st != null) st.sampleThreads.record(sample.size());
+                graphFor(pid).apply(sample);
                 
-                return new DeadlockInfo(pid, false, allThreadInfos, threadBean);
+                DeadlockInfo info = new DeadlockInfo(pid, false, null, threadBean);
+                info.sample = sample;
+                return info;
             }
             
         } catch (Exception e) {
             System.err.println("❌ Error monitoring process " + pid + ": " + e.getMessage());
-            // Process might have terminated
-            disconnect(pid);
+            // Process might have terminated: reconnect with backoff, or give up if it is gone
+            connections.markFailed(pid, e);
             return null;
         }
     }
     
+    private static void recordCall(TargetStatus st, int call, long startNanos) {
+        if (st != null) {
+            st.callSeconds[call].recordNanos(System.nanoTime() - startNanos);
+        }
+    }
+    
     /**
-     * Disconnect from a specific process
+     * All threads of a target through a raw {@code getThreadInfo(long[], int)} invoke on the
+     * Threading MBean, decoded from the returned CompositeData without building ThreadInfo objects.
      */
-    public void disconnect(String pid) {
-        threadBeans.remove(pid);
+    private ThreadSample sampleThreads(String pid) throws Exception {
+        MBeanServerConnection mbsc = connections.mbeanConnection(pid);
+        if (mbsc == null) {
+            throw new IllegalStateException("Not connected to PID " + pid);
+        }
+        ObjectName threading = new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME);
+        long[] ids = (long[]) mbsc.getAttribute(threading, "AllThreadIds");
+        CompositeData[] data = (CompositeData[]) mbsc.invoke(threading, "getThreadInfo",
+            new Object[] {ids, sampleFrames}, GET_THREAD_INFO_SIGNATURE);
+        return ThreadSample.decode(data, sampleFrames);
+    }
+    
+    /**
+     * Whether the target has the wait-graph MBean; looked up once, and again every 30 s while absent
+     */
+    private boolean usesWaitGraph(String pid, TargetStatus st) throws Exception {
+        if (!compactGraph) {
+            return false;
+        }
+        Boolean known = st.waitGraph;
+        long now = System.currentTimeMillis();
+        if (known == null || (!known && now - st.waitGraphCheckedAt > WAIT_GRAPH_RECHECK_MS)) {
+            MBeanServerConnection mbsc = connections.mbeanConnection(pid);
+            known = mbsc != null && mbsc.isRegistered(new ObjectName(WAIT_GRAPH_MBEAN));
+            st.waitGraph = known;
+            st.waitGraphCheckedAt = now;
+            st.graphVersion = -1;
+        }
+        return known;
+    }
+    
+    /**
+     * Poll through the in-target wait-graph MBean: an idle tick costs four longs. When the graph
+     * changed, ThreadInfo is fetched only for the deadlocked threads (with locks) or for the
+     * waiters and owners (without stacks), never for the whole population.
+     */
+    private DeadlockInfo checkWaitGraph(String pid, ThreadMXBean threadBean, TargetStatus st) throws Exception {
+        MBeanServerConnection mbsc = connections.mbeanConnection(pid);
+        if (mbsc == null) {
+            throw new IllegalStateException("Not connected to PID " + pid);
+        }
+        DeadlockInfo previous = latestResults.get(pid);
+        long known = previous != null ? st.graphVersion : -1;
+        long callStart = System.nanoTime();
+        long[] data = (long[]) mbsc.invoke(new ObjectName(WAIT_GRAPH_MBEAN), "poll",
+            new Object[] {known}, new String[] {long.class.getName()});
+        recordCall(st, WAIT_GRAPH_POLL, callStart);
+        st.recordWaitGraphPoll(data.length);
         
-        JMXConnector connector = activeConnections.remove(pid);
-        if (connector != null) {
+        DeadlockInfo info;
+        if (data.length == WAIT_GRAPH_HEADER) {
+            info = new DeadlockInfo(pid, previous.hasDeadlock, previous.threadInfos, threadBean);
+            info.unchanged = true;
+        } else {
+            int waiters = (int) data[WAIT_GRAPH_HEADER];
+            int recordsAt = WAIT_GRAPH_HEADER + 1;
+            int deadlockAt = recordsAt + waiters * WAIT_GRAPH_RECORD;
+            long[] deadlocked = Arrays.copyOfRange(data, deadlockAt + 1, deadlockAt + 1 + (int) data[deadlockAt]);
+            
+            graphFor(pid).applyWaits(data, recordsAt, waiters, WAIT_GRAPH_RECORD);
+            if (deadlocked.length > 0) {
+                System.out.println("🔴 DEADLOCK DETECTED in PID " + pid + "! Threads: " + Arrays.toString(deadlocked));
+                callStart = System.nanoTime();
+                info = new DeadlockInfo(pid, true, threadBean.getThreadInfo(deadlocked, true, true), threadBean);
+                recordCall(st, GET_THREAD_INFO, callStart);
+            } else {
+                Set<Long> involved = new LinkedHashSet<>();
+                for (int i = 0; i < waiters; i++) {
+                    int at = recordsAt + i * WAIT_GRAPH_RECORD;
+                    involved.add(data[at]);
+                    if (data[at + 2] != WaitForGraph.NONE) involved.add(data[at + 2]);
+                }
+                long[] ids = involved.stream().mapToLong(Long::longValue).toArray();
+                callStart = System.nanoTime();
+                ThreadInfo[] infos = ids.length == 0 ? new ThreadInfo[0] : threadBean.getThreadInfo(ids, 0);
+                recordCall(st, GET_THREAD_INFO, callStart);
+                info = new DeadlockInfo(pid, false, infos, threadBean);
+            }
+        }
+        info.graphVersion = data[0];
+        info.liveThreads = (int) data[1];
+        info.blockedCount = data[2];
+        info.blockedThreads = (int) data[3];
+        return info;
+    }
+    
+    /**
+     * Add a process to the set polled by {@link #pollMonitoredProcesses()}
+     */
+    public void startMonitoring(String pid) {
+        if (monitoredPids.add(pid)) {
+            status(pid);
+            connections.ensure(pid); // pre-warm before the first poll
+            if (injectGraphAgent && compactGraph) {
+                pollExecutor.submit(() -> {
+                    try {
+                        connections.awaitConnected(pid, connectWaitMs);
+                        if (!connections.mbeanConnection(pid).isRegistered(new ObjectName(WAIT_GRAPH_MBEAN))) {
+                            loadWaitGraphAgent(pid);
+                        }
+                    } catch (Exception e) {
+                        System.err.println("⚠️ Could not inject wait-graph MBean into PID " + pid + ": " + e.getMessage());
+                    }
+                });
+            }
+            System.out.println("🎯 Polling PID " + pid + " (" + monitoredPids.size() + " targets)");
+        }
+    }
+    
+    /**
+     * Stop polling a process and drop its cached connection
+     */
+    public void stopMonitoring(String pid) {
+        monitoredPids.remove(pid);
+        Future<?> pending = inFlightPolls.remove(pid);
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        latestResults.remove(pid);
+        targetStatus.remove(pid);
+        metrics.removeSeries("pid", pid);
+        disconnect(pid);
+        for (Consumer<String> listener : stopListeners) {
+            listener.accept(pid);
+        }
+    }
+    
+    public Set<String> getMonitoredPids() {
+        return Set.copyOf(monitoredPids);
+    }
+    
+    /**
+     * Register a callback invoked (on the polling virtual thread) with every completed poll result
+     */
+    public void addPollListener(Consumer<DeadlockInfo> listener) {
+        pollListeners.add(listener);
+    }
+    
+    /**
+     * Register a callback invoked with the PID of every process that stops being monitored
+     */
+    public void addStopListener(Consumer<String> listener) {
+        stopListeners.add(listener);
+    }
+    
+    public DeadlockInfo getLatestResult(String pid) {
+        return latestResults.get(pid);
+    }
+    
+    /**
+     * Poll every monitored process that is due, in parallel.
+     * Runs on a fine tick; each target is due according to its own adaptive interval.
+     * Each poll runs on its own virtual thread. Once its deadline expires the poll is cancelled
+     * and the target's connector is closed, which is what actually unblocks a hung RMI read;
+     * a target is skipped until its previous poll task has really returned, so hung polls
+     * never stack up.
+     */
+    @Scheduled(fixedRateString = "${deadlock.polling.tick-ms:100}")
+    public void pollMonitoredProcesses() {
+        long now = System.currentTimeMillis();
+        for (String pid : monitoredPids) {
+            TargetStatus st = status(pid);
+            if (!st.interval.tryClaim(now)) {
+                continue;
+            }
+            if (!st.polling.compareAndSet(false, true)) {
+                st.recordSkip();
+                continue;
+            }
+            
+            Future<?> poll = pollExecutor.submit(() -> {
+                try {
+                    pollTarget(pid);
+                } finally {
+                    st.polling.set(false);
+                }
+            });
+            inFlightPolls.put(pid, poll);
+            pollWatchdog.schedule(() -> {
+                if (st.polling.get() && inFlightPolls.get(pid) == poll) {
+                    poll.cancel(true);
+                    // get, not status(): a target removed meanwhile must not get its status and series back
+                    TargetStatus current = targetStatus.get(pid);
+                    if (current != null) {
+                        current.recordTimeout();
+                    }
+                    connections.markFailed(pid, new TimeoutException("poll exceeded " + targetDeadlineMs + " ms deadline"));
+                    System.err.println("⏱️ Poll of PID " + pid + " exceeded " + targetDeadlineMs + " ms deadline");
+                }
+            }, targetDeadlineMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void pollTarget(String pid) {
+        if (connections.threadBean(pid) == null) {
+            return; // still attaching or backing off: not a failed poll
+        }
+        long start = System.nanoTime();
+        DeadlockInfo info = checkProcessForDeadlocks(pid);
+        TargetStatus st = targetStatus.get(pid);
+        if (Thread.currentThread().isInterrupted() || st == null || !monitoredPids.contains(pid)) {
+            return; // deadline expired or target removed while we were polling
+        }
+        
+        st.recordPoll(System.nanoTime() - start, info != null);
+        if (info == null) {
+            st.interval.onFailure();
+            return;
+        }
+        
+        DeadlockInfo previous = latestResults.get(pid);
+        long now = System.currentTimeMillis();
+        if (info.hasDeadlock) {
+            if (previous == null || !previous.hasDeadlock || !sameThreads(previous.threadInfos, info.threadInfos)) {
+                st.interval.onDetection(now);
+            } else {
+                st.interval.onQuietProbe(now);
+            }
+        } else if (info.blockedCount >= 0) {
+            st.interval.onCounters(info.blockedThreads, info.blockedCount, -1, now);
+        } else if (info.sample != null) {
+            st.interval.onCounters(info.sample.blockedThreads(), info.sample.totalBlockedCount(),
+                info.sample.totalBlockedTime(), now);
+        } else {
+            st.interval.onSample(info.threadInfos, now);
+        }
+        if (info.unchanged) {
+            return; // same graph as the last published result
+        }
+        
+        latestResults.put(pid, info);
+        if (info.graphVersion >= 0) {
+            // committed only now: a result dropped above must be fetched again in full next time
+            st.graphVersion = info.graphVersion;
+        }
+        for (Consumer<DeadlockInfo> listener : pollListeners) {
             try {
-                connector.close();
-                System.out.println("🔌 Disconnected from PID: " + pid);
+                listener.accept(info);
             } catch (Exception e) {
-                // Ignore close errors
+                System.err.println("⚠️ Poll listener failed for PID " + pid + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private TargetStatus status(String pid) {
+        return targetStatus.computeIfAbsent(pid, p -> new TargetStatus(p,
+            new AdaptivePollInterval(initialIntervalMs, minIntervalMs, maxIntervalMs, hotWindowMs), metrics));
+    }
+    
+    private static boolean sameThreads(ThreadInfo[] a, ThreadInfo[] b) {
+        long[] idsA = Arrays.stream(a).filter(t -> t != null).mapToLong(ThreadInfo::getThreadId).sorted().toArray();
+        long[] idsB = Arrays.stream(b).filter(t -> t != null).mapToLong(ThreadInfo::getThreadId).sorted().toArray();
+        return Arrays.equals(idsA, idsB);
+    }
+    
+    /**
+     * Contention seen in a target between polls (JFR event stream): poll it early.
+     */
+    public void onContentionEvent(String pid, String reason) {
+        TargetStatus st = targetStatus.get(pid);
+        if (st != null) {
+            st.interval.onContention(System.currentTimeMillis(), reason);
+        }
+    }
+    
+    /**
+     * MBean server of a connected target, or null when there is no open connection
+     */
+    public MBeanServerConnection mbeanConnection(String pid) {
+        return connections.mbeanConnection(pid);
+    }
+    
+    /**
+     * Per-target polling status for the dashboard
+     */
+    public List<Map<String, Object>> getPollStatus() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (TargetStatus st : targetStatus.values()) {
+            Map<String, Object> map = st.toMap(latestResults.get(st.pid));
+            WaitForGraph graph = waitForGraphs.get(st.pid);
+            if (graph != null) {
+                Map<String, Object> waits = new HashMap<>();
+                waits.put("waiters", graph.waiterCount());
+                waits.put("cycles", graph.cycleCount());
+                waits.put("version", graph.version());
+                waits.put("lastChanges", graph.lastChangeCount());
+                map.put("waitForGraph", waits);
             }
+            map.put("connection", connections.status(st.pid));
+            result.add(map);
         }
+        return result;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        pollWatchdog.shutdownNow();
+        pollExecutor.shutdownNow();
+        disconnectAll();
+    }
+    
+    /**
+     * Persistent wait-for graph for a process, updated with the diff of every poll
+     */
+    public WaitForGraph graphFor(String pid) {
+        return waitForGraphs.computeIfAbsent(pid, p -> new WaitForGraph());
+    }
+    
+    /**
+     * Disconnect from a specific process
+     */
+    public void disconnect(String pid) {
+        waitForGraphs.remove(pid);
+        connections.release(pid);
     }
     
     /**
      * Disconnect from all processes
      */
     public void disconnectAll() {
-        for (String pid : new ArrayList<>(activeConnections.keySet())) {
-            disconnect(pid);
-        }
+        waitForGraphs.clear();
+        connections.releaseAll();
     }
     
     /**
-     * Information about a Java process
+     * Polling statistics for one monitored process
      */
-    public static class JavaProcessInfo {
-        public String pid;
-        public String displayName;
+    public static class TargetStatus {
+        public final String pid;
+        public final AdaptivePollInterval interval;
+        public volatile long lastPollAt;
+        public volatile long lastPollMillis;
+        public volatile long polls;
+        public volatile long failures;
+        public volatile long timeouts;
+        public volatile long skipped;
+        // set from submit until the poll task returns: cancel(true) does not end a blocked RMI read.
+        // A task cancelled before it ran leaves it set, but only on a status dropped by stopMonitoring
+        final AtomicBoolean polling = new AtomicBoolean();
+        // wait-graph MBean: present in the target (null = not looked up), last version, payload stats
+        volatile Boolean waitGraph;
+        volatile long waitGraphCheckedAt;
+        volatile long graphVersion = -1;
+        public volatile long waitGraphPolls;
+        public volatile long unchangedPolls;
+        public volatile long lastPayloadLongs;
+        // metric handles, looked up once per target
+        final DetectorMetrics.Histogram pollSeconds;
+        final DetectorMetrics.Histogram[] callSeconds = new DetectorMetrics.Histogram[CALLS.length];
+        final DetectorMetrics.Histogram sampleThreads;
+        final LongAdder failuresTotal;
+        final LongAdder timeoutsTotal;
         
-        public JavaProcessInfo(String pid, String displayName) {
+        public TargetStatus(String pid, AdaptivePollInterval interval, DetectorMetrics metrics) {
             this.pid = pid;
-            this.displayName = displayName;
+            this.interval = interval;
+            this.pollSeconds = metrics.timer("deadlock_target_poll_seconds", "Duration of one remote poll", "pid", pid);
+            for (int i = 0; i < CALLS.length; i++) {
+                callSeconds[i] = metrics.timer("deadlock_target_call_seconds", "Latency of remote ThreadMXBean and MBean calls",
+                    "pid", pid, "call", CALLS[i]);
+            }
+            this.sampleThreads = metrics.sizes("deadlock_target_sample_threads", "Threads decoded per remote sample", "pid", pid);
+            this.failuresTotal = metrics.counter("deadlock_target_poll_failures_total", "Failed remote polls", "pid", pid);
+            this.timeoutsTotal = metrics.counter("deadlock_target_poll_timeouts_total", "Remote polls cancelled at the deadline", "pid", pid);
         }
         
-        public String getPid() { return pid; }
-        public String getDisplayName() { return displayName; }
+        synchronized void recordPoll(long elapsedNanos, boolean success) {
+            lastPollAt = System.currentTimeMillis();
+            lastPollMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            polls++;
+            pollSeconds.recordNanos(elapsedNanos);
+            if (!success) {
+                failures++;
+                failuresTotal.increment();
+            }
+        }
+        
+        synchronized void recordTimeout() {
+            timeouts++;
+            timeoutsTotal.increment();
+        }
+        
+        synchronized void recordSkip() {
+            skipped++;
+        }
+        
+        synchronized void recordWaitGraphPoll(int payloadLongs) {
+            waitGraphPolls++;
+            if (payloadLongs == WAIT_GRAPH_HEADER) unchangedPolls++;
+            lastPayloadLongs = payloadLongs;
+        }
+        
+        Map<String, Object> toMap(DeadlockInfo latest) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("pid", pid);
+            map.put("lastPollAt", lastPollAt);
+            map.put("lastPollMillis", lastPollMillis);
+            map.put("polls", polls);
+            map.put("failures", failures);
+            map.put("timeouts", timeouts);
+            map.put("skipped", skipped);
+            map.put("hasDeadlock", latest != null && latest.hasDeadlock);
+            map.put("polling", interval.toMap());
+            if (waitGraph != null && waitGraph) {
+                Map<String, Object> graph = new HashMap<>();
+                graph.put("version", graphVersion);
+                graph.put("polls", waitGraphPolls);
+                graph.put("unchangedPolls", unchangedPolls);
+                graph.put("lastPayloadLongs", lastPayloadLongs);
+                map.put("waitGraph", graph);
+            }
+            return map;
+        }
     }
     
     /**
@@ -233,7 +704,17 @@ public class JMXProcessMonitor {
         public String pid;
         public boolean hasDeadlock;
         public ThreadInfo[] threadInfos;
+        // no-deadlock poll without the wait-graph MBean: decoded sample of all threads instead of threadInfos
+        public ThreadSample sample;
         public ThreadMXBean threadBean;
+        // counters of all threads when polled through the wait-graph MBean, else -1
+        public int liveThreads = -1;
+        public int blockedThreads = -1;
+        public long blockedCount = -1;
+        // the wait-graph version did not move since the previous result
+        public boolean unchanged;
+        // wait-graph version this result was built from, -1 when not polled through the MBean
+        public long graphVersion = -1;
         
         public DeadlockInfo(String pid, boolean hasDeadlock, ThreadInfo[] threadInfos, ThreadMXBean threadBean) {
             this.pid = pid;
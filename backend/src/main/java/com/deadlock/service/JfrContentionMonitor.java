@@ -0,0 +1,420 @@
+package com.deadlock.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServerConnection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.EventStream;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import jdk.management.jfr.RemoteRecordingStream;
+
+/**
+ * Event-driven contention capture with JFR streaming.
+ *
+ * Subscribes to {@code jdk.JavaMonitorEnter}, {@code jdk.JavaMonitorWait} and {@code jdk.ThreadPark}
+ * above a duration threshold, in this JVM through a {@link RecordingStream} and in every monitored
+ * target through a {@link RemoteRecordingStream} over its JMX connection. JFR commits these events
+ * when the wait ends (a thread stuck in a deadlock never produces one) and flushes streams about
+ * once a second, so the events do not replace the deadlock probe: lock contention brings the next
+ * probe of the JVM forward, and the probe updates the wait-for graph. Object.wait() and condition
+ * waits are usually idle threads and are only counted. {@code jdk.VirtualThreadPinned} events are
+ * aggregated by application frame into pinning hotspots.
+ */
+@Service
+public class JfrContentionMonitor {
+
+    public static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    public static final String MONITOR_WAIT = "jdk.JavaMonitorWait";
+    public static final String THREAD_PARK = "jdk.ThreadPark";
+    public static final String VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+
+    private static final long REMOTE_RETRY_MILLIS = 30_000;
+    private static final int MAX_PINNED_SITES = 256;
+
+    private final DeadlockService deadlockService;
+    private final JMXProcessMonitor jmxMonitor;
+    private final boolean enabled;
+    private final boolean remoteEnabled;
+    private final Duration threshold;
+
+    private final BoundedEventStore<ContentionEvent> recentEvents;
+    private final Map<String, StreamState> streams = new ConcurrentHashMap<>();
+    // Remote streams are opened off the shared scheduler thread: the constructor blocks on JMX calls
+    private final ExecutorService opener = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<String> opening = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicLong> eventCounts = new ConcurrentHashMap<>();
+    private final AtomicLong earlyProbes = new AtomicLong();
+    // stream -> (application frame a virtual thread was pinned at -> count, total ms), bounded per stream
+    private final Map<String, Map<String, long[]>> pinnedSites = new ConcurrentHashMap<>();
+
+    public JfrContentionMonitor(DeadlockService deadlockService, JMXProcessMonitor jmxMonitor,
+                                @Value("${deadlock.jfr.enabled:true}") boolean enabled,
+                                @Value("${deadlock.jfr.remote:false}") boolean remoteEnabled,
+                                @Value("${deadlock.jfr.threshold-ms:20}") long thresholdMs,
+                                @Value("${deadlock.jfr.history:512}") int historyCapacity) {
+        this.deadlockService = deadlockService;
+        this.jmxMonitor = jmxMonitor;
+        this.enabled = enabled;
+        this.remoteEnabled = remoteEnabled;
+        this.threshold = Duration.ofMillis(thresholdMs);
+        this.recentEvents = new BoundedEventStore<>(historyCapacity, 0);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            System.out.println("JFR contention capture disabled");
+            return;
+        }
+        try {
+            RecordingStream rs = new RecordingStream();
+            StreamState state = open(SnapshotPublisher.LOCAL_STREAM, rs);
+            rs.startAsync();
+            System.out.println("JFR contention capture started (threshold " + threshold.toMillis() + " ms)");
+            streams.put(state.stream, state);
+        } catch (Exception e) {
+            System.err.println("JFR contention capture unavailable: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Open a remote stream for every monitored target that has a JMX connection, and close
+     * the streams of targets no longer monitored. Opening runs in the background; a target
+     * is not tried again while its previous attempt is still running.
+     */
+    @Scheduled(fixedDelayString = "${deadlock.jfr.sync-interval-ms:1000}")
+    public void syncRemoteStreams() {
+        if (!enabled || !remoteEnabled) {
+            return;
+        }
+        Set<String> pids = jmxMonitor.getMonitoredPids();
+        long now = System.currentTimeMillis();
+        for (String pid : pids) {
+            StreamState state = streams.get(pid);
+            if (state != null && (state.error == null || now - state.failedAt < REMOTE_RETRY_MILLIS)) {
+                continue;
+            }
+            MBeanServerConnection connection = jmxMonitor.mbeanConnection(pid);
+            if (connection == null) {
+                continue; // not connected yet, the poller will connect
+            }
+            if (opening.add(pid)) {
+                opener.execute(() -> openRemote(pid, connection));
+            }
+        }
+        for (String stream : new ArrayList<>(streams.keySet())) {
+            if (!stream.equals(SnapshotPublisher.LOCAL_STREAM) && !pids.contains(stream)) {
+                close(stream);
+            }
+        }
+    }
+
+    private void openRemote(String pid, MBeanServerConnection connection) {
+        StreamState replaced;
+        try {
+            RemoteRecordingStream rs = new RemoteRecordingStream(connection);
+            StreamState opened = open(pid, rs);
+            rs.startAsync();
+            replaced = streams.put(pid, opened);
+            System.out.println("JFR contention stream opened for PID " + pid);
+        } catch (Exception e) {
+            StreamState failed = new StreamState(pid, null);
+            failed.fail(e);
+            replaced = streams.put(pid, failed);
+            System.err.println("JFR contention stream unavailable for PID " + pid + ": " + e.getMessage());
+        } finally {
+            opening.remove(pid);
+        }
+        // a retry replaces a failed stream, which may still hold a remote recording
+        closeQuietly(replaced);
+    }
+
+    private StreamState open(String stream, EventStream es) {
+        StreamState state = new StreamState(stream, es);
+        if (es instanceof RecordingStream rs) {
+            rs.enable(MONITOR_ENTER).withThreshold(threshold).withStackTrace();
+            rs.enable(MONITOR_WAIT).withThreshold(threshold).withoutStackTrace();
+            rs.enable(THREAD_PARK).withThreshold(threshold).withStackTrace();
+            rs.enable(VIRTUAL_THREAD_PINNED).withThreshold(threshold).withStackTrace();
+        } else if (es instanceof RemoteRecordingStream rs) {
+            rs.enable(MONITOR_ENTER).withThreshold(threshold).withStackTrace();
+            rs.enable(MONITOR_WAIT).withThreshold(threshold).withoutStackTrace();
+            rs.enable(THREAD_PARK).withThreshold(threshold).withStackTrace();
+            rs.enable(VIRTUAL_THREAD_PINNED).withThreshold(threshold).withStackTrace();
+        }
+        es.setReuse(true);
+        es.onEvent(MONITOR_ENTER, e -> onEvent(state, e));
+        es.onEvent(MONITOR_WAIT, e -> onEvent(state, e));
+        es.onEvent(THREAD_PARK, e -> onEvent(state, e));
+        es.onEvent(VIRTUAL_THREAD_PINNED, e -> onPinned(state, e));
+        es.onError(state::fail);
+        return state;
+    }
+
+    private void onEvent(StreamState state, RecordedEvent e) {
+        String type = e.getEventType().getName();
+        ContentionEvent event = ContentionEvent.from(state.stream, type, e);
+        state.events.incrementAndGet();
+        state.lastEventAt = System.currentTimeMillis();
+        eventCounts.computeIfAbsent(type, t -> new AtomicLong()).incrementAndGet();
+        if (!event.isLockContention()) {
+            return; // counted only, idle pools park and wait all the time
+        }
+        recentEvents.append(event);
+        earlyProbes.incrementAndGet();
+        String reason = "jfr " + type.substring(4) + " on " + event.lockClass;
+        if (state.stream.equals(SnapshotPublisher.LOCAL_STREAM)) {
+            deadlockService.onContentionEvent(reason);
+        } else {
+            jmxMonitor.onContentionEvent(state.stream, reason);
+        }
+    }
+
+    /**
+     * A virtual thread blocked while pinned to its carrier (inside synchronized or a native frame).
+     */
+    private void onPinned(StreamState state, RecordedEvent e) {
+        state.events.incrementAndGet();
+        state.lastEventAt = System.currentTimeMillis();
+        eventCounts.computeIfAbsent(VIRTUAL_THREAD_PINNED, t -> new AtomicLong()).incrementAndGet();
+        String site = ContentionEvent.applicationFrame(e);
+        if (site == null) site = "(unknown)";
+        Map<String, long[]> sites = pinnedSites.computeIfAbsent(state.stream, s -> new ConcurrentHashMap<>());
+        long[] counts = sites.get(site);
+        if (counts == null) {
+            if (sites.size() >= MAX_PINNED_SITES) site = "(other)";
+            counts = sites.computeIfAbsent(site, k -> new long[2]);
+        }
+        synchronized (counts) {
+            counts[0]++;
+            counts[1] += e.getDuration().toMillis();
+        }
+    }
+
+    /**
+     * Sites where virtual threads were pinned, most frequent first.
+     */
+    public List<Map<String, Object>> getPinnedHotspots(String stream, int limit) {
+        Map<String, long[]> sites = pinnedSites.getOrDefault(stream, Map.of());
+        List<Map<String, Object>> result = new ArrayList<>();
+        sites.forEach((site, counts) -> {
+            Map<String, Object> hotspot = new HashMap<>();
+            synchronized (counts) {
+                hotspot.put("site", site);
+                hotspot.put("count", counts[0]);
+                hotspot.put("totalMillis", counts[1]);
+            }
+            result.add(hotspot);
+        });
+        result.sort((a, b) -> Long.compare((long) b.get("count"), (long) a.get("count")));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private void close(String stream) {
+        StreamState state = streams.remove(stream);
+        pinnedSites.remove(stream);
+        if (closeQuietly(state)) {
+            System.out.println("JFR contention stream closed for " + stream);
+        }
+    }
+
+    private static boolean closeQuietly(StreamState state) {
+        if (state == null || state.eventStream == null) {
+            return false;
+        }
+        try {
+            state.eventStream.close();
+        } catch (Exception e) {
+            // closing a stream of a vanished target may fail, nothing left to release
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        opener.shutdownNow();
+        for (String stream : new ArrayList<>(streams.keySet())) {
+            close(stream);
+        }
+    }
+
+    /**
+     * Most recent events, newest first, optionally for one stream ("local" or a PID).
+     */
+    public List<ContentionEvent> getRecentEvents(String stream, int limit) {
+        List<ContentionEvent> result = new ArrayList<>();
+        recentEvents.forEach(0, recentEvents.capacity(), e -> {
+            if (result.size() < limit && (stream == null || stream.equals(e.stream))) {
+                result.add(e);
+            }
+        });
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("remoteEnabled", remoteEnabled);
+        stats.put("thresholdMs", threshold.toMillis());
+        stats.put("earlyProbes", earlyProbes.get());
+        Map<String, Long> counts = new HashMap<>();
+        eventCounts.forEach((type, count) -> counts.put(type, count.get()));
+        stats.put("events", counts);
+        List<Map<String, Object>> streamStats = new ArrayList<>();
+        for (StreamState state : streams.values()) {
+            streamStats.add(state.toMap());
+        }
+        stats.put("streams", streamStats);
+        return stats;
+    }
+
+    /**
+     * One stream, local or remote
+     */
+    private static class StreamState {
+        final String stream;
+        final EventStream eventStream;
+        final AtomicLong events = new AtomicLong();
+        final long openedAt = System.currentTimeMillis();
+        volatile long lastEventAt;
+        volatile long failedAt;
+        volatile String error;
+
+        StreamState(String stream, EventStream eventStream) {
+            this.stream = stream;
+            this.eventStream = eventStream;
+        }
+
+        void fail(Throwable t) {
+            failedAt = System.currentTimeMillis();
+            error = String.valueOf(t.getMessage());
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("stream", stream);
+            map.put("open", eventStream != null && error == null);
+            map.put("events", events.get());
+            map.put("openedAt", openedAt);
+            map.put("lastEventAt", lastEventAt);
+            map.put("error", error);
+            return map;
+        }
+    }
+
+    /**
+     * A completed wait, as reported by JFR
+     */
+    public static class ContentionEvent {
+        public final String stream;
+        public final String type;
+        public final long threadId;
+        public final String threadName;
+        public final String lockClass;
+        public final String otherThread;
+        public final long durationMillis;
+        public final long endedAt;
+        public final String topFrame;
+
+        ContentionEvent(String stream, String type, long threadId, String threadName, String lockClass,
+                        String otherThread, long durationMillis, long endedAt, String topFrame) {
+            this.stream = stream;
+            this.type = type;
+            this.threadId = threadId;
+            this.threadName = threadName;
+            this.lockClass = lockClass;
+            this.otherThread = otherThread;
+            this.durationMillis = durationMillis;
+            this.endedAt = endedAt;
+            this.topFrame = topFrame;
+        }
+
+        /**
+         * Blocked on a monitor, or parked on a lock (not on a condition or an idle queue).
+         */
+        public boolean isLockContention() {
+            if (MONITOR_ENTER.equals(type)) {
+                return true;
+            }
+            return THREAD_PARK.equals(type) && lockClass != null
+                    && !lockClass.contains("ConditionObject")
+                    && (lockClass.endsWith("Sync") || lockClass.contains("Lock"));
+        }
+
+        static ContentionEvent from(String stream, String type, RecordedEvent e) {
+            RecordedThread thread = e.getThread();
+            String lockClass = className(e, MONITOR_ENTER.equals(type) || MONITOR_WAIT.equals(type)
+                    ? "monitorClass" : "parkedClass");
+            String other = null;
+            if (MONITOR_ENTER.equals(type)) {
+                other = threadName(e, "previousOwner");
+            } else if (MONITOR_WAIT.equals(type)) {
+                other = threadName(e, "notifier");
+            }
+            String topFrame = null;
+            if (e.getStackTrace() != null) {
+                for (RecordedFrame frame : e.getStackTrace().getFrames()) {
+                    String owner = frame.getMethod().getType().getName();
+                    if (owner.startsWith("jdk.internal.") || owner.startsWith("java.util.concurrent.locks.")) {
+                        continue; // skip the parking machinery, keep the caller
+                    }
+                    topFrame = frameText(frame);
+                    break;
+                }
+            }
+            return new ContentionEvent(stream, type,
+                    thread != null ? thread.getJavaThreadId() : -1,
+                    thread != null ? thread.getJavaName() : null,
+                    lockClass, other, e.getDuration().toMillis(), e.getEndTime().toEpochMilli(), topFrame);
+        }
+
+        /**
+         * First frame outside the JDK, or null without a stack trace.
+         */
+        static String applicationFrame(RecordedEvent e) {
+            if (e.getStackTrace() == null) return null;
+            for (RecordedFrame frame : e.getStackTrace().getFrames()) {
+                String owner = frame.getMethod().getType().getName();
+                if (!owner.startsWith("java.") && !owner.startsWith("jdk.") && !owner.startsWith("sun.")) {
+                    return frameText(frame);
+                }
+            }
+            return null;
+        }
+
+        private static String frameText(RecordedFrame frame) {
+            return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+        }
+
+        private static String className(RecordedEvent e, String field) {
+            if (!e.hasField(field)) return null;
+            RecordedClass c = e.getClass(field);
+            return c != null ? c.getName() : null;
+        }
+
+        private static String threadName(RecordedEvent e, String field) {
+            if (!e.hasField(field)) return null;
+            RecordedThread t = e.getThread(field);
+            return t != null ? t.getJavaName() : null;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.deadlock.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.sun.tools.attach.VirtualMachine;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pre-warmed JMX connections to target JVMs.
+ *
+ * Attaching (attach API, management agent start, RMI connect) happens on background virtual
+ * threads; callers on the polling path only ever get an already open connection or null, so a
+ * poll never pays attach latency. Open connections get a cheap liveness check
+ * ({@code getMBeanCount()}) every health interval. A failed attach or check closes the connection
+ * and retries with exponential backoff; a target whose process is gone is not retried. RMI reads
+ * are bounded by {@code sun.rmi.transport.tcp.responseTimeout}, so a hung target fails a call
+ * instead of blocking it forever.
+ */
+@Service
+public class JmxConnectionManager {
+
+    private static final String CONNECTOR_ADDRESS = "com.sun.management.jmxremote.localConnectorAddress";
+
+    public enum State { CONNECTING, CONNECTED, BACKOFF, GONE }
+
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final ExecutorService attachExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "JMXReconnect");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public JmxConnectionManager(@Value("${deadlock.jmx.backoff-initial-ms:500}") long initialBackoffMs,
+                                @Value("${deadlock.jmx.backoff-max-ms:30000}") long maxBackoffMs,
+                                @Value("${deadlock.jmx.read-timeout-ms:10000}") long readTimeoutMs,
+                                @Value("${deadlock.jmx.attach-timeout-ms:5000}") long attachTimeoutMs) {
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        // both are read once by the JDK, so they must be in place before the first attach/connect
+        System.setProperty("sun.rmi.transport.tcp.responseTimeout", String.valueOf(readTimeoutMs));
+        System.setProperty("sun.tools.attach.attachTimeout", String.valueOf(attachTimeoutMs));
+    }
+
+    /**
+     * Start connecting to a target in the background, if not already connected or connecting.
+     */
+    public void ensure(String pid) {
+        Connection c = connections.computeIfAbsent(pid, Connection::new);
+        synchronized (c) {
+            if (c.state == State.GONE && ProcessHandle.of(parsePid(pid)).isPresent()) {
+                c.state = State.BACKOFF; // explicitly requested again
+                c.nextAttemptAt = 0;
+            }
+            if (c.state == State.BACKOFF && !c.attemptScheduled && System.currentTimeMillis() >= c.nextAttemptAt) {
+                c.state = State.CONNECTING;
+                attachExecutor.submit(() -> attach(c));
+            }
+        }
+    }
+
+    /**
+     * ThreadMXBean proxy of a connected target, or null (and a background attach is started).
+     */
+    public ThreadMXBean threadBean(String pid) {
+        Connection c = connections.get(pid);
+        if (c == null || c.state != State.CONNECTED) {
+            ensure(pid);
+            return null;
+        }
+        return c.threadBean;
+    }
+
+    /**
+     * MBean server of a connected target, or null when there is no open connection.
+     */
+    public MBeanServerConnection mbeanConnection(String pid) {
+        Connection c = connections.get(pid);
+        return c != null && c.state == State.CONNECTED ? c.mbsc : null;
+    }
+
+    /**
+     * For on-demand requests: start connecting if needed and wait up to {@code timeoutMs}.
+     */
+    public ThreadMXBean awaitConnected(String pid, long timeoutMs) throws Exception {
+        ensure(pid);
+        Connection c = connections.get(pid);
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (c) {
+            while (c.state != State.CONNECTED) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (c.state == State.GONE) {
+                    throw new IllegalStateException("Process " + pid + " is not running");
+                }
+                if (remaining <= 0) {
+                    throw new TimeoutException("Not connected to PID " + pid + " after " + timeoutMs + " ms"
+                            + (c.lastError != null ? ": " + c.lastError : ""));
+                }
+                c.wait(remaining);
+            }
+            return c.threadBean;
+        }
+    }
+
+    /**
+     * A call on the connection failed: drop it and reconnect with backoff.
+     */
+    public void markFailed(String pid, Exception error) {
+        Connection c = connections.get(pid);
+        if (c != null) {
+            fail(c, error);
+        }
+    }
+
+    /**
+     * Close and forget a target.
+     */
+    public void release(String pid) {
+        Connection c = connections.remove(pid);
+        if (c != null) {
+            synchronized (c) {
+                c.state = State.GONE;
+                close(c);
+                c.notifyAll();
+            }
+            System.out.println("🔌 Disconnected from PID: " + pid);
+        }
+    }
+
+    public void releaseAll() {
+        for (String pid : new ArrayList<>(connections.keySet())) {
+            release(pid);
+        }
+    }
+
+    /**
+     * Liveness check of every open connection, each on its own virtual thread.
+     */
+    @Scheduled(fixedDelayString = "${deadlock.jmx.health-interval-ms:5000}")
+    public void checkHealth() {
+        for (Connection c : connections.values()) {
+            if (c.state != State.CONNECTED) continue;
+            attachExecutor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    c.mbsc.getMBeanCount();
+                    c.lastCheckAt = System.currentTimeMillis();
+                    c.lastCheckMicros = (System.nanoTime() - start) / 1000;
+                } catch (Exception e) {
+                    fail(c, e);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> status(String pid) {
+        Connection c = connections.get(pid);
+        return c == null ? Map.of("state", "NONE") : c.toMap();
+    }
+
+    public List<Map<String, Object>> getStatus() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Connection c : connections.values()) {
+            result.add(c.toMap());
+        }
+        return result;
+    }
+
+    private void attach(Connection c) {
+        long start = System.nanoTime();
+        VirtualMachine vm = null;
+        JMXConnector connector = null;
+        try {
+            System.out.println("🔌 Connecting to process PID: " + c.pid);
+            vm = VirtualMachine.attach(c.pid);
+            String connectorAddr = vm.getAgentProperties().getProperty(CONNECTOR_ADDRESS);
+            if (connectorAddr == null) {
+                // returns once the agent is listening, no need to wait for it
+                System.out.println("🔧 Starting local management agent for PID: " + c.pid);
+                connectorAddr = vm.startLocalManagementAgent();
+            }
+            if (connectorAddr == null || connectorAddr.isEmpty()) {
+                throw new IllegalStateException("Failed to obtain JMX connector address for PID: " + c.pid);
+            }
+
+            Map<String, Object> env = new HashMap<>();
+            // client-side heartbeat; our own health check runs more often
+            env.put("jmx.remote.x.client.connection.check.period", 0L);
+            connector = JMXConnectorFactory.connect(new JMXServiceURL(connectorAddr), env);
+            MBeanServerConnection mbsc = connector.getMBeanServerConnection();
+            ThreadMXBean threadBean = ManagementFactory.newPlatformMXBeanProxy(
+                    mbsc, ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+
+            synchronized (c) {
+                if (c.state == State.GONE) {
+                    connector.close(); // released while we were attaching
+                    return;
+                }
+                c.connector = connector;
+                c.mbsc = mbsc;
+                c.threadBean = threadBean;
+                c.state = State.CONNECTED;
+                c.failures = 0;
+                c.lastError = null;
+                c.connectedAt = System.currentTimeMillis();
+                c.attachMillis = (System.nanoTime() - start) / 1_000_000;
+                c.notifyAll();
+            }
+            System.out.println("✅ Connected to process PID: " + c.pid + " in " + c.attachMillis + " ms");
+        } catch (Exception e) {
+            if (connector != null) {
+                try { connector.close(); } catch (Exception ignored) {}
+            }
+            fail(c, e);
+        } finally {
+            if (vm != null) {
+                try { vm.detach(); } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    private void fail(Connection c, Exception error) {
+        synchronized (c) {
+            if (c.state == State.GONE) return;
+            close(c);
+            c.failures++;
+            c.lastError = String.valueOf(error.getMessage());
+            if (!ProcessHandle.of(parsePid(c.pid)).map(ProcessHandle::isAlive).orElse(false)) {
+                c.state = State.GONE;
+                c.notifyAll();
+                System.err.println("❌ PID " + c.pid + " is gone, not reconnecting");
+                return;
+            }
+            long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(20, c.failures - 1));
+            c.state = State.BACKOFF;
+            c.nextAttemptAt = System.currentTimeMillis() + backoff;
+            c.attemptScheduled = true;
+            System.err.println("⚠️ JMX connection to PID " + c.pid + " failed (" + c.lastError + "), retry in " + backoff + " ms");
+            retryScheduler.schedule(() -> {
+                synchronized (c) {
+                    c.attemptScheduled = false;
+                }
+                if (connections.get(c.pid) == c) ensure(c.pid);
+            }, backoff, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void close(Connection c) {
+        JMXConnector connector = c.connector;
+        c.connector = null;
+        c.mbsc = null;
+        c.threadBean = null;
+        if (connector != null) {
+            try {
+                connector.close();
+            } catch (Exception e) {
+                // the target may already be gone
+            }
+        }
+    }
+
+    private static long parsePid(String pid) {
+        try {
+            return Long.parseLong(pid);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        attachExecutor.shutdownNow();
+        releaseAll();
+    }
+
+    /**
+     * Connection state of one target
+     */
+    private static class Connection {
+        final String pid;
+        volatile State state = State.BACKOFF;
+        volatile JMXConnector connector;
+        volatile MBeanServerConnection mbsc;
+        volatile ThreadMXBean threadBean;
+        boolean attemptScheduled;
+        long nextAttemptAt;
+        volatile int failures;
+        volatile String lastError;
+        volatile long connectedAt;
+        volatile long attachMillis;
+        volatile long lastCheckAt;
+        volatile long lastCheckMicros;
+
+        Connection(String pid) {
+            this.pid = pid;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("pid", pid);
+            map.put("state", state.name());
+            map.put("failures", failures);
+            map.put("lastError", lastError);
+            map.put("connectedAt", connectedAt);
+            map.put("attachMillis", attachMillis);
+            map.put("lastCheckAt", lastCheckAt);
+            map.put("lastCheckMicros", lastCheckMicros);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.deadlock.service;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of a HotSpot perfdata file ({@code hsperfdata_<user>/<pid>}), the memory-mapped
+ * jvmstat counters every JVM publishes unless started with {@code -XX:-UsePerfData}.
+ *
+ * The entry table is walked once when the file is opened and the offsets of the counters of
+ * interest are kept, so reading them afterwards is a handful of loads from the mapping, without
+ * attaching to the JVM. Layout: a 32 byte prologue (magic 0xcafec0c0, byte order, version,
+ * accessible flag, ..., entry offset, entry count) followed by entries of
+ * (length, name offset, vector length, type, flags, units, variability, data offset).
+ */
+public class PerfDataFile {
+
+    private static final int MAGIC = 0xcafec0c0;
+    private static final int ACCESSIBLE_OFFSET = 7;
+    private static final int ENTRY_OFFSET_OFFSET = 24;
+    private static final int NUM_ENTRIES_OFFSET = 28;
+    private static final int ENTRY_HEADER_SIZE = 20;
+
+    private final MappedByteBuffer buffer;
+    private final Map<String, Integer> longOffsets = new HashMap<>();
+    private final List<Integer> heapUsedOffsets = new ArrayList<>();
+    private final Map<String, String> strings = new HashMap<>();
+
+    private PerfDataFile(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Map and index a perfdata file, or return null while the JVM has not finished
+     * initializing it (or it is not a perfdata file).
+     */
+    public static PerfDataFile open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 32) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.order(ByteOrder.BIG_ENDIAN).getInt(0) != MAGIC || buffer.get(ACCESSIBLE_OFFSET) == 0) {
+            return null;
+        }
+        buffer.order(buffer.get(4) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+        PerfDataFile perf = new PerfDataFile(buffer);
+        int entry = buffer.getInt(ENTRY_OFFSET_OFFSET);
+        int count = buffer.getInt(NUM_ENTRIES_OFFSET);
+        // every offset is checked against the mapping: the first entry that does not fit ends the walk
+        for (int i = 0; i < count && entry > 0 && fits(buffer, entry, ENTRY_HEADER_SIZE); i++) {
+            int length = buffer.getInt(entry);
+            if (length < ENTRY_HEADER_SIZE) break;
+            long nameAt = (long) entry + buffer.getInt(entry + 4);
+            int vectorLength = buffer.getInt(entry + 8);
+            byte type = buffer.get(entry + 12);
+            long dataAt = (long) entry + buffer.getInt(entry + 16);
+            if (!fits(buffer, nameAt, 1)) break;
+            String name = cString(buffer, (int) nameAt, Integer.MAX_VALUE);
+            if (type == 'J' && vectorLength == 0) {
+                if (!fits(buffer, dataAt, 8)) break;
+                perf.longOffsets.put(name, (int) dataAt);
+                if (name.startsWith("sun.gc.generation.") && name.endsWith(".used") && name.contains(".space.")) {
+                    perf.heapUsedOffsets.add((int) dataAt);
+                }
+            } else if (type == 'B' && vectorLength > 0 && isWantedString(name)) {
+                if (!fits(buffer, dataAt, 1)) break;
+                perf.strings.put(name, cString(buffer, (int) dataAt, vectorLength));
+            }
+            entry += length;
+        }
+        return perf;
+    }
+
+    private static boolean fits(MappedByteBuffer buffer, long offset, int size) {
+        return offset >= 0 && offset + size <= buffer.limit();
+    }
+
+    private static boolean isWantedString(String name) {
+        return name.equals("sun.rt.javaCommand") || name.equals("java.property.java.version")
+                || name.equals("java.property.java.vm.name");
+    }
+
+    /**
+     * Current value of a long counter, or -1 if the JVM does not publish it.
+     */
+    public long getLong(String name) {
+        Integer offset = longOffsets.get(name);
+        return offset == null ? -1 : buffer.getLong(offset);
+    }
+
+    /**
+     * Used bytes summed over all heap generations and spaces.
+     */
+    public long heapUsed() {
+        long used = 0;
+        for (int offset : heapUsedOffsets) {
+            used += buffer.getLong(offset);
+        }
+        return used;
+    }
+
+    public String getString(String name) {
+        return strings.get(name);
+    }
+
+    private static String cString(MappedByteBuffer buffer, int offset, int max) {
+        int end = offset;
+        int limit = (int) Math.min(buffer.limit(), (long) offset + max);
+        while (end < limit && buffer.get(end) != 0) end++;
+        byte[] bytes = new byte[end - offset];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,296 @@
+package com.deadlock.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Live index of the JVMs on this host, fed by filesystem events instead of scans.
+ *
+ * Every HotSpot JVM creates {@code <tmp>/hsperfdata_<user>/<pid>} at startup and removes it on
+ * exit. A {@link WatchService} on the temp directory and on each {@code hsperfdata_*} directory
+ * adds and drops processes as those files come and go; a periodic refresh reads the jvmstat
+ * counters (threads, heap) from each file's mapping through {@link PerfDataFile}, prunes JVMs that
+ * died without cleaning up, and rebuilds the immutable list served by {@link #getProcesses()}.
+ */
+@Service
+public class ProcessRegistry {
+
+    private static final String PERFDATA_PREFIX = "hsperfdata_";
+
+    private final Path root;
+    private final long selfPid = ProcessHandle.current().pid();
+    private final Map<Long, ProcessEntry> processes = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private volatile List<Map<String, Object>> processList = List.of();
+    private WatchService watchService;
+    private Thread watcher;
+
+    public ProcessRegistry(@Value("${deadlock.processes.perfdata-root:${java.io.tmpdir}}") String root) {
+        this.root = Path.of(root);
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            watchedDirs.put(root.register(watchService, StandardWatchEventKinds.ENTRY_CREATE), root);
+        } catch (IOException e) {
+            System.err.println("Process registry cannot watch " + root + ": " + e.getMessage());
+        }
+        rescan();
+        if (watchService != null) {
+            watcher = new Thread(this::watchLoop, "ProcessRegistryWatcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        System.out.println("Process registry watching " + root + " (" + processes.size() + " JVMs)");
+    }
+
+    /**
+     * Live JVMs (excluding this one), as last refreshed. Returns the same immutable list until
+     * something changes.
+     */
+    public List<Map<String, Object>> getProcesses() {
+        return processList;
+    }
+
+    public boolean isAlive(String pid) {
+        try {
+            return processes.containsKey(Long.parseLong(pid));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Re-read counters, drop JVMs that died without removing their file, publish a new list.
+     */
+    @Scheduled(fixedDelayString = "${deadlock.processes.refresh-ms:2000}")
+    public void refresh() {
+        long now = System.nanoTime();
+        for (ProcessEntry entry : processes.values()) {
+            if (!entry.handle.isAlive()) {
+                processes.remove(entry.pid);
+                continue;
+            }
+            entry.refresh(now);
+        }
+        publish();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = watchedDirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    try {
+                        handle(dir, event);
+                    } catch (RuntimeException e) {
+                        // one unreadable file must not stop the watcher
+                        System.err.println("Process registry skipped " + event.context() + ": " + e);
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirs.remove(key);
+                }
+                publish();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    private void handle(Path dir, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+            rescan();
+            return;
+        }
+        Path path = dir.resolve((Path) event.context());
+        if (dir.equals(root)) {
+            if (path.getFileName().toString().startsWith(PERFDATA_PREFIX)) {
+                watchPerfDir(path);
+            }
+        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            remove(path);
+        } else {
+            add(path);
+        }
+    }
+
+    private void rescan() {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, PERFDATA_PREFIX + "*")) {
+            for (Path dir : dirs) {
+                watchPerfDir(dir);
+            }
+        } catch (IOException e) {
+            System.err.println("Process registry scan of " + root + " failed: " + e.getMessage());
+        }
+        publish();
+    }
+
+    private void watchPerfDir(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        if (watchService != null && !watchedDirs.containsValue(dir)) {
+            try {
+                watchedDirs.put(dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE), dir);
+            } catch (IOException e) {
+                System.err.println("Process registry cannot watch " + dir + ": " + e.getMessage());
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                add(file);
+            }
+        } catch (IOException e) {
+            // directory of another user we may not read
+        }
+    }
+
+    private void add(Path file) {
+        long pid = parsePid(file);
+        if (pid <= 0 || pid == selfPid) {
+            return;
+        }
+        ProcessEntry existing = processes.get(pid);
+        if (existing != null && existing.perf != null) {
+            return;
+        }
+        ProcessHandle.of(pid).filter(ProcessHandle::isAlive).ifPresent(handle -> {
+            ProcessEntry entry = existing != null ? existing : new ProcessEntry(pid, file, handle);
+            entry.open(); // the JVM may still be initializing the file; retried on MODIFY and refresh
+            entry.refresh(System.nanoTime());
+            processes.put(pid, entry);
+        });
+    }
+
+    private void remove(Path file) {
+        long pid = parsePid(file);
+        ProcessEntry entry = processes.get(pid);
+        if (entry != null && entry.file.equals(file)) {
+            processes.remove(pid);
+        }
+    }
+
+    private static long parsePid(Path file) {
+        try {
+            return Long.parseLong(file.getFileName().toString());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void publish() {
+        List<Map<String, Object>> list = new ArrayList<>(processes.size());
+        for (ProcessEntry entry : processes.values()) {
+            list.add(entry.view);
+        }
+        list.sort((a, b) -> Long.compare((long) a.get("startedAt"), (long) b.get("startedAt")));
+        processList = List.copyOf(list);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            if (watchService != null) watchService.close();
+        } catch (IOException e) {
+            // nothing to release
+        }
+    }
+
+    /**
+     * One discovered JVM and its latest counters
+     */
+    private static class ProcessEntry {
+        final long pid;
+        final Path file;
+        final ProcessHandle handle;
+        final long startedAt;
+        PerfDataFile perf;
+        long lastCpuNanos = -1;
+        long lastSampleNanos;
+        volatile Map<String, Object> view = Map.of("startedAt", 0L);
+
+        ProcessEntry(long pid, Path file, ProcessHandle handle) {
+            this.pid = pid;
+            this.file = file;
+            this.handle = handle;
+            this.startedAt = handle.info().startInstant().map(i -> i.toEpochMilli()).orElse(0L);
+        }
+
+        synchronized void open() {
+            if (perf != null) return;
+            try {
+                perf = PerfDataFile.open(file);
+            } catch (IOException | RuntimeException e) {
+                perf = null; // not ready (or not a perfdata file): retried on MODIFY and refresh
+            }
+        }
+
+        synchronized void refresh(long now) {
+            open();
+            String command = perf != null ? perf.getString("sun.rt.javaCommand") : null;
+            if (command == null) {
+                command = handle.info().commandLine().orElse("");
+            }
+            String name = command.isBlank() ? "pid " + pid : command.split(" ", 2)[0];
+
+            // CPU usage between two refreshes, from /proc via ProcessHandle (no attach either)
+            long cpuNanos = handle.info().totalCpuDuration().map(Duration::toNanos).orElse(-1L);
+            double cpuUsage = 0;
+            if (cpuNanos >= 0 && lastCpuNanos >= 0 && now > lastSampleNanos) {
+                cpuUsage = Math.round(1000.0 * (cpuNanos - lastCpuNanos) / (now - lastSampleNanos)) / 10.0;
+            }
+            lastCpuNanos = cpuNanos;
+            lastSampleNanos = now;
+
+            Map<String, Object> v = new HashMap<>();
+            v.put("pid", String.valueOf(pid));
+            v.put("displayName", name);
+            v.put("name", name);
+            v.put("command", command);
+            v.put("status", "RUNNING");
+            v.put("startedAt", startedAt);
+            v.put("cpuUsage", cpuUsage);
+            v.put("perfData", perf != null);
+            if (perf != null) {
+                v.put("memoryUsage", Math.round(perf.heapUsed() / 1024.0 / 1024.0 * 10) / 10.0);
+                v.put("liveThreads", perf.getLong("java.threads.live"));
+                v.put("daemonThreads", perf.getLong("java.threads.daemon"));
+                v.put("peakThreads", perf.getLong("java.threads.livePeak"));
+                v.put("javaVersion", perf.getString("java.property.java.version"));
+            }
+            view = Map.copyOf(nullsRemoved(v));
+        }
+
+        private static Map<String, Object> nullsRemoved(Map<String, Object> map) {
+            map.values().removeIf(value -> value == null);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.deadlock.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Runs deadlock resolutions on one dedicated thread instead of a new thread per deadlock.
+ *
+ * A resolution starts after a grace period (so the dashboard shows the detection first). At most
+ * {@code queueCapacity} resolutions wait at a time, more are rejected rather than piling up
+ * during a storm, and a cycle (keyed by its sorted thread ids) is handled once while it is queued
+ * or running. Also keeps the time-to-recovery statistics: detection to verified clear.
+ */
+public class ResolutionExecutor {
+
+    private static final int TTR_SAMPLES = 256;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final long graceMillis;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    // time to recovery, ring of the latest samples for percentiles
+    private final long[] ttrSamples = new long[TTR_SAMPLES];
+    private long ttrCount;
+    private long ttrTotal;
+    private long ttrMax;
+    private long ttrLast;
+
+    public ResolutionExecutor(int queueCapacity, long graceMillis) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.graceMillis = Math.max(0, graceMillis);
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "DeadlockResolver");
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Key of a deadlock cycle: its thread ids, sorted.
+     */
+    public static String cycleKey(Collection<Long> threadIds) {
+        return threadIds.stream().sorted().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Schedule a resolution after the grace period.
+     *
+     * @return false if the same cycle is already queued or running, or the queue is full
+     */
+    public boolean submit(String key, Runnable resolution) {
+        if (!inFlight.add(key)) {
+            deduplicated.incrementAndGet();
+            return false;
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            inFlight.remove(key);
+            rejected.incrementAndGet();
+            System.err.println("Resolution queue full (" + queueCapacity + "), dropping cycle [" + key + "]");
+            return false;
+        }
+        submitted.incrementAndGet();
+        try {
+            executor.schedule(() -> {
+                queued.decrementAndGet();
+                try {
+                    resolution.run();
+                } catch (Exception e) {
+                    System.err.println("Resolution of cycle [" + key + "] failed: " + e.getMessage());
+                } finally {
+                    completed.incrementAndGet();
+                    inFlight.remove(key);
+                }
+            }, graceMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            inFlight.remove(key);
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Whether a resolution of this cycle is queued or running.
+     */
+    public boolean isInFlight(String key) {
+        return inFlight.contains(key);
+    }
+
+    /** Resolutions waiting for their grace period or running. */
+    public int queued() {
+        return queued.get();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Record the time from detection to verified recovery.
+     */
+    public synchronized void recordRecovery(long millis) {
+        ttrSamples[(int) (ttrCount % TTR_SAMPLES)] = millis;
+        ttrCount++;
+        ttrTotal += millis;
+        ttrMax = Math.max(ttrMax, millis);
+        ttrLast = millis;
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("graceMs", graceMillis);
+        map.put("queueCapacity", queueCapacity);
+        map.put("queued", queued.get());
+        map.put("inFlight", inFlight.size());
+        map.put("submitted", submitted.get());
+        map.put("deduplicated", deduplicated.get());
+        map.put("rejected", rejected.get());
+        map.put("completed", completed.get());
+
+        Map<String, Object> ttr = new HashMap<>();
+        ttr.put("count", ttrCount);
+        ttr.put("avgMs", ttrCount == 0 ? 0 : ttrTotal / ttrCount);
+        ttr.put("maxMs", ttrMax);
+        ttr.put("lastMs", ttrLast);
+        long[] recent = Arrays.copyOf(ttrSamples, (int) Math.min(ttrCount, TTR_SAMPLES));
+        Arrays.sort(recent);
+        ttr.put("p50Ms", percentile(recent, 0.50));
+        ttr.put("p95Ms", percentile(recent, 0.95));
+        map.put("timeToRecovery", ttr);
+        return map;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
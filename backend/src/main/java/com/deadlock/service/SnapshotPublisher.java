@@ -0,0 +1,243 @@
+package com.deadlock.service;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import com.deadlock.model.DeadlockSnapshot;
+import com.deadlock.model.SnapshotDelta;
+
+/**
+ * Publishes snapshots to STOMP subscribers as a sequenced delta stream.
+ *
+ * The first snapshot of a stream goes out in full; after that only a {@link SnapshotDelta}
+ * against the previously published snapshot is broadcast, and snapshots whose structural hash
+ * matches the last published one are dropped before any diffing. Clients fetch the current full snapshot
+ * (with its sequence number and frame table) on subscribe or whenever they notice a sequence gap;
+ * deltas carry only the frame table entries their threads reference that the base snapshot did not.
+ */
+@Service
+public class SnapshotPublisher {
+
+    public static final String LOCAL_STREAM = "local";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final FrameDictionary frameDictionary;
+    private final Map<String, DeadlockSnapshot> published = new ConcurrentHashMap<>();
+    // frame ids referenced by the last published snapshot of each stream: every client holding
+    // that snapshot (followed the stream, or fetched it with its frame table) knows their text
+    private final Map<String, BitSet> publishedFrames = new ConcurrentHashMap<>();
+    private final Map<String, Object> streamLocks = new ConcurrentHashMap<>();
+    private final DetectorMetrics metrics;
+    private final Map<String, StreamMetrics> streamMetrics = new ConcurrentHashMap<>();
+
+    private final AtomicLong fullSnapshotsSent = new AtomicLong();
+    private final AtomicLong deltasSent = new AtomicLong();
+    private final AtomicLong unchangedSkipped = new AtomicLong();
+    private final AtomicLong threadsSent = new AtomicLong();
+
+    public SnapshotPublisher(SimpMessagingTemplate messagingTemplate, FrameDictionary frameDictionary,
+                             DetectorMetrics metrics) {
+        this.messagingTemplate = messagingTemplate;
+        this.frameDictionary = frameDictionary;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Publish a local-JVM snapshot on /topic/deadlock.
+     */
+    public boolean publish(DeadlockSnapshot snapshot) {
+        return publish(LOCAL_STREAM, snapshot);
+    }
+
+    /**
+     * Publish a snapshot on the stream's topic.
+     *
+     * @return false when nothing a client renders changed, so nothing was sent
+     */
+    public boolean publish(String stream, DeadlockSnapshot snapshot) {
+        String topic = topicFor(stream);
+        StreamMetrics m = streamMetrics.computeIfAbsent(stream, s -> new StreamMetrics(metrics, s));
+        synchronized (lockFor(stream)) {
+            DeadlockSnapshot base = published.get(stream);
+            if (base != null && base.getStructuralHash() == snapshot.getStructuralHash()) {
+                // same threads, states and waits: skip without diffing or serializing anything
+                unchangedSkipped.incrementAndGet();
+                m.unchanged.increment();
+                return false;
+            }
+            m.snapshotThreads.record(snapshot.getThreads().size());
+            // the caller's snapshot may be shared (e.g. a cached capture): stamp a copy instead
+            DeadlockSnapshot stamped = snapshot.copy();
+            if (base == null) {
+                stamped.setSequence(1);
+                stamped.setFrameTable(frameTableFor(stamped));
+                publishedFrames.put(stream, referencedFrames(stamped));
+                published.put(stream, stamped);
+                long sendStart = System.nanoTime();
+                messagingTemplate.convertAndSend(topic, stamped);
+                m.sendSeconds.recordNanos(System.nanoTime() - sendStart);
+                m.full.increment();
+                fullSnapshotsSent.incrementAndGet();
+                threadsSent.addAndGet(snapshot.getThreads().size());
+                return true;
+            }
+
+            long diffStart = System.nanoTime();
+            SnapshotDelta delta = SnapshotDelta.between(base, stamped);
+            m.diffSeconds.recordNanos(System.nanoTime() - diffStart);
+            if (delta.isEmpty() && base.isDeadlockDetected() == snapshot.isDeadlockDetected()) {
+                unchangedSkipped.incrementAndGet();
+                m.unchanged.increment();
+                return false;
+            }
+            long sequence = base.getSequence() + 1;
+            stamped.setSequence(sequence);
+            stamped.setFrameTable(null);
+            delta.setSequence(sequence);
+            BitSet known = publishedFrames.getOrDefault(stream, new BitSet());
+            Map<Integer, String> newFrames = new HashMap<>();
+            addUnknownFrames(newFrames, known, delta.getAddedThreads());
+            addUnknownFrames(newFrames, known, delta.getChangedThreads());
+            if (!newFrames.isEmpty()) {
+                delta.setNewFrames(newFrames);
+            }
+            publishedFrames.put(stream, referencedFrames(stamped));
+            published.put(stream, stamped);
+            long sendStart = System.nanoTime();
+            messagingTemplate.convertAndSend(topic, delta);
+            m.sendSeconds.recordNanos(System.nanoTime() - sendStart);
+            m.deltas.increment();
+            deltasSent.incrementAndGet();
+            threadsSent.addAndGet(delta.getAddedThreads().size() + delta.getChangedThreads().size());
+            return true;
+        }
+    }
+
+    /**
+     * Full snapshot a (re)subscribing client starts from; deltas with baseSequence equal to its
+     * sequence apply on top of it.
+     */
+    public DeadlockSnapshot current(String stream) {
+        DeadlockSnapshot snapshot = published.get(stream);
+        if (snapshot == null) {
+            return new DeadlockSnapshot();
+        }
+        return withFrameTable(snapshot);
+    }
+
+    /**
+     * Copy of {@code snapshot} carrying the text of every frame id it references, for callers
+     * that never saw the stream's incremental frame updates. The snapshot itself is not touched.
+     */
+    public DeadlockSnapshot withFrameTable(DeadlockSnapshot snapshot) {
+        DeadlockSnapshot copy = snapshot.copy();
+        copy.setFrameTable(frameTableFor(snapshot));
+        return copy;
+    }
+
+    /**
+     * Last snapshot published on a stream as is (no frame table attached), or null.
+     */
+    public DeadlockSnapshot latest(String stream) {
+        return published.get(stream);
+    }
+
+    /**
+     * Forget a stream (e.g. the remote process is no longer monitored).
+     */
+    public void reset(String stream) {
+        synchronized (lockFor(stream)) {
+            published.remove(stream);
+            publishedFrames.remove(stream);
+        }
+        if (!LOCAL_STREAM.equals(stream) && streamMetrics.remove(stream) != null) {
+            metrics.removeSeries("stream", stream);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("streams", published.size());
+        stats.put("fullSnapshotsSent", fullSnapshotsSent.get());
+        stats.put("deltasSent", deltasSent.get());
+        stats.put("unchangedSkipped", unchangedSkipped.get());
+        stats.put("threadsSent", threadsSent.get());
+        return stats;
+    }
+
+    /**
+     * Text for every frame id the snapshot references, so a (re)subscribing client can render it
+     * without the history of incremental frame updates.
+     */
+    private Map<Integer, String> frameTableFor(DeadlockSnapshot snapshot) {
+        Map<Integer, String> table = new HashMap<>();
+        for (DeadlockSnapshot.ThreadData t : snapshot.getThreads()) {
+            for (int id : t.frames) {
+                if (!table.containsKey(id)) {
+                    String frame = frameDictionary.frame(id);
+                    if (frame != null) table.put(id, frame);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Text of the frames these threads reference that are not in {@code known}.
+     */
+    private void addUnknownFrames(Map<Integer, String> newFrames, BitSet known, List<DeadlockSnapshot.ThreadData> threads) {
+        for (DeadlockSnapshot.ThreadData t : threads) {
+            for (int id : t.frames) {
+                if (known.get(id) || newFrames.containsKey(id)) continue;
+                String frame = frameDictionary.frame(id);
+                if (frame != null) newFrames.put(id, frame);
+            }
+        }
+    }
+
+    private static BitSet referencedFrames(DeadlockSnapshot snapshot) {
+        BitSet ids = new BitSet();
+        for (DeadlockSnapshot.ThreadData t : snapshot.getThreads()) {
+            for (int id : t.frames) ids.set(id);
+        }
+        return ids;
+    }
+
+    public static String topicFor(String stream) {
+        return LOCAL_STREAM.equals(stream) ? "/topic/deadlock" : "/topic/deadlock/" + stream;
+    }
+
+    private Object lockFor(String stream) {
+        return streamLocks.computeIfAbsent(stream, s -> new Object());
+    }
+    
+    /**
+     * Metric handles of one stream
+     */
+    private static class StreamMetrics {
+        final DetectorMetrics.Histogram snapshotThreads;
+        final DetectorMetrics.Histogram diffSeconds;
+        final DetectorMetrics.Histogram sendSeconds;
+        final LongAdder full;
+        final LongAdder deltas;
+        final LongAdder unchanged;
+        
+        StreamMetrics(DetectorMetrics metrics, String stream) {
+            snapshotThreads = metrics.sizes("deadlock_snapshot_threads", "Threads in a changed snapshot", "stream", stream);
+            diffSeconds = metrics.timer("deadlock_publish_diff_seconds", "Time to diff a snapshot against the last published one", "stream", stream);
+            sendSeconds = metrics.timer("deadlock_publish_send_seconds", "Serialization and broker fan-out of one STOMP message", "stream", stream);
+            String published = "Snapshots handed to the publisher, by outcome";
+            full = metrics.counter("deadlock_published_total", published, "stream", stream, "kind", "full");
+            deltas = metrics.counter("deadlock_published_total", published, "stream", stream, "kind", "delta");
+            unchanged = metrics.counter("deadlock_published_total", published, "stream", stream, "kind", "unchanged");
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.deadlock.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServerConnection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Virtual-thread-scale capture with {@link HotSpotDiagnosticMXBean#dumpThreads}.
+ *
+ * {@code ThreadMXBean} only sees platform threads. The JSON thread dump also lists every virtual
+ * thread, grouped by thread container. The dump goes to a temporary file and is read back with a
+ * Jackson token stream, one frame at a time, into a fixed set of counters: threads per blocking
+ * kind and up to {@code maxSites} (kind, application frame) hotspots. Heap use stays flat however
+ * many threads the dump holds. The JDK 21 dump carries neither thread states nor lock identities,
+ * so the kind comes from the frames (parked in a lock acquire, condition, Object.wait, sleep,
+ * I/O) and no wait-for edges can be derived. A virtual thread blocked on a monitor shows as
+ * RUNNING with the synchronized method on top. Pinning is reported from JFR's
+ * {@code jdk.VirtualThreadPinned} events by {@link JfrContentionMonitor}.
+ */
+@Service
+public class ThreadDumpService {
+
+    private static final String HOTSPOT_DIAGNOSTIC = "com.sun.management:type=HotSpotDiagnostic";
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final JMXProcessMonitor jmxMonitor;
+    private final JfrContentionMonitor contentionMonitor;
+    private final int maxSites;
+    private final Map<String, DumpSummary> latest = new ConcurrentHashMap<>();
+    private final Path dumpDir;
+    private final boolean scheduled;
+    private final long intervalMs;
+    // Periodic dumps take seconds per target: they get their own thread, not the shared scheduler
+    private ScheduledExecutorService dumpScheduler;
+
+    public ThreadDumpService(JMXProcessMonitor jmxMonitor, JfrContentionMonitor contentionMonitor,
+                             @Value("${deadlock.vthreads.scheduled:false}") boolean scheduled,
+                             @Value("${deadlock.vthreads.interval-ms:30000}") long intervalMs,
+                             @Value("${deadlock.vthreads.max-sites:1024}") int maxSites) throws IOException {
+        this.jmxMonitor = jmxMonitor;
+        this.contentionMonitor = contentionMonitor;
+        this.scheduled = scheduled;
+        this.intervalMs = intervalMs;
+        this.maxSites = maxSites;
+        this.dumpDir = Files.createTempDirectory("deadlock-threaddumps");
+        this.dumpDir.toFile().deleteOnExit();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!scheduled) {
+            return;
+        }
+        dumpScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ThreadDumpCapture");
+            t.setDaemon(true);
+            return t;
+        });
+        dumpScheduler.scheduleWithFixedDelay(this::captureScheduled, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Dump and summarize all threads of this JVM ("local") or a monitored target (PID).
+     */
+    public DumpSummary capture(String stream) throws Exception {
+        HotSpotDiagnosticMXBean diagnostic;
+        if (stream == null || SnapshotPublisher.LOCAL_STREAM.equals(stream)) {
+            stream = SnapshotPublisher.LOCAL_STREAM;
+            diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        } else {
+            jmxMonitor.connectToProcess(stream);
+            MBeanServerConnection connection = jmxMonitor.mbeanConnection(stream);
+            if (connection == null) {
+                throw new IllegalStateException("Not connected to PID " + stream);
+            }
+            diagnostic = ManagementFactory.newPlatformMXBeanProxy(connection, HOTSPOT_DIAGNOSTIC, HotSpotDiagnosticMXBean.class);
+        }
+
+        // the target writes the file itself, so this only works for JVMs on this host
+        Path file = dumpDir.resolve("threads-" + stream + "-" + System.nanoTime() + ".json");
+        long start = System.nanoTime();
+        try {
+            diagnostic.dumpThreads(file.toAbsolutePath().toString(), HotSpotDiagnosticMXBean.ThreadDumpFormat.JSON);
+            long dumpNanos = System.nanoTime() - start;
+            DumpSummary summary;
+            try (InputStream in = Files.newInputStream(file)) {
+                summary = summarize(in, maxSites);
+            }
+            summary.stream = stream;
+            summary.bytes = Files.size(file);
+            summary.dumpMillis = dumpNanos / 1_000_000;
+            summary.parseMillis = (System.nanoTime() - start - dumpNanos) / 1_000_000;
+            summary.pinnedHotspots = contentionMonitor.getPinnedHotspots(stream, 20);
+            latest.put(stream, summary);
+            return summary;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Periodic capture of this JVM and every monitored target, when enabled.
+     */
+    void captureScheduled() {
+        List<String> streams = new ArrayList<>(jmxMonitor.getMonitoredPids());
+        streams.add(SnapshotPublisher.LOCAL_STREAM);
+        for (String stream : streams) {
+            try {
+                capture(stream);
+            } catch (Exception e) {
+                System.err.println("Thread dump of " + stream + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dumpScheduler != null) {
+            dumpScheduler.shutdownNow();
+        }
+    }
+
+    public DumpSummary getLatest(String stream) {
+        return latest.get(stream == null ? SnapshotPublisher.LOCAL_STREAM : stream);
+    }
+
+    /**
+     * Stream a {@code dumpThreads} JSON document into a summary. Keeps two strings per thread
+     * (the frame being read and the first application frame), never the thread list.
+     */
+    public static DumpSummary summarize(InputStream in, int maxSites) throws IOException {
+        DumpSummary summary = new DumpSummary(maxSites);
+        try (JsonParser parser = JSON.createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME && "threadContainers".equals(parser.currentName())) {
+                    parser.nextToken(); // START_ARRAY
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readContainer(parser, summary);
+                    }
+                }
+            }
+        }
+        return summary;
+    }
+
+    private static void readContainer(JsonParser parser, DumpSummary summary) throws IOException {
+        summary.containers++;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("threads".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readThread(parser, summary);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readThread(JsonParser parser, DumpSummary summary) throws IOException {
+        ThreadKind kind = null;
+        String site = null;
+        boolean virtual = false;
+        boolean parked = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"stack".equals(field) || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                String frame = parser.getText();
+                if (site == null) {
+                    if (isJdkFrame(frame)) {
+                        if (kind == null) kind = ThreadKind.of(frame);
+                        parked |= frame.contains("LockSupport.park");
+                    } else {
+                        site = frame;
+                    }
+                }
+                if (frame.startsWith("java.base/java.lang.VirtualThread.run(")) {
+                    virtual = true;
+                }
+            }
+        }
+        if (kind == null) {
+            kind = parked ? ThreadKind.PARKED : ThreadKind.RUNNING;
+        }
+        summary.add(kind, site, virtual);
+    }
+
+    private static boolean isJdkFrame(String frame) {
+        // frames of named modules are prefixed with the module, e.g. "java.base/java.lang.Thread.sleep(...)"
+        return frame.startsWith("java.") || frame.startsWith("jdk.");
+    }
+
+    /**
+     * What a thread is doing, from its top JDK frames
+     */
+    public enum ThreadKind {
+        LOCK, CONDITION, OBJECT_WAIT, SLEEP, IO, PARKED, RUNNING;
+
+        static ThreadKind of(String frame) {
+            if (frame.contains("AbstractQueuedSynchronizer$ConditionObject.await")) return CONDITION;
+            if (frame.contains("AbstractQueuedSynchronizer.acquire") || frame.contains("StampedLock.acquire")) return LOCK;
+            if (frame.contains("java.lang.Object.wait")) return OBJECT_WAIT;
+            if (frame.contains("java.lang.Thread.sleep")) return SLEEP;
+            if (frame.contains("sun.nio.") || frame.contains("java.net.") || frame.contains("java.io.")) return IO;
+            return null; // keep looking further down: LockSupport.park is refined by its caller
+        }
+    }
+
+    /**
+     * Bounded aggregate of one dump
+     */
+    public static class DumpSummary {
+        public String stream;
+        public final long capturedAt = System.currentTimeMillis();
+        public long threads;
+        public long virtualThreads;
+        public long platformThreads;
+        public long containers;
+        public long bytes;
+        public long dumpMillis;
+        public long parseMillis;
+        public final Map<ThreadKind, Long> byKind = new HashMap<>();
+        public long droppedSites;
+        public List<Map<String, Object>> pinnedHotspots = List.of();
+
+        private final int maxSites;
+        // "KIND|frame" -> {threads, virtual threads}
+        private final Map<String, long[]> sites = new HashMap<>();
+
+        DumpSummary(int maxSites) {
+            this.maxSites = maxSites;
+        }
+
+        void add(ThreadKind kind, String site, boolean virtual) {
+            threads++;
+            if (virtual) virtualThreads++; else platformThreads++;
+            byKind.merge(kind, 1L, Long::sum);
+            String key = kind + "|" + (site == null ? "(jdk internal)" : site);
+            long[] counts = sites.get(key);
+            if (counts == null) {
+                if (sites.size() >= maxSites) {
+                    droppedSites++;
+                    return;
+                }
+                counts = new long[2];
+                sites.put(key, counts);
+            }
+            counts[0]++;
+            if (virtual) counts[1]++;
+        }
+
+        /**
+         * Most populated (kind, application frame) sites, blocked kinds only.
+         */
+        public List<Map<String, Object>> getHotspots() {
+            List<Map<String, Object>> result = new ArrayList<>();
+            sites.forEach((key, counts) -> {
+                int bar = key.indexOf('|');
+                ThreadKind kind = ThreadKind.valueOf(key.substring(0, bar));
+                if (kind == ThreadKind.RUNNING && counts[0] < 2) return;
+                Map<String, Object> hotspot = new HashMap<>();
+                hotspot.put("kind", kind);
+                hotspot.put("site", key.substring(bar + 1));
+                hotspot.put("threads", counts[0]);
+                hotspot.put("virtualThreads", counts[1]);
+                result.add(hotspot);
+            });
+            result.sort((a, b) -> Long.compare((long) b.get("threads"), (long) a.get("threads")));
+            return result.size() > 50 ? new ArrayList<>(result.subList(0, 50)) : result;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.deadlock.service;
+
+import java.lang.Thread.State;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the thread of a deadlock cycle to interrupt, and keeps success rates per strategy.
+ *
+ * Only a thread parked in an interruptible acquire ({@code lockInterruptibly}, timed
+ * {@code tryLock}, condition {@code await}) can be freed by an interrupt; a thread BLOCKED on a
+ * monitor or in a plain {@code lock()} ignores it. Among the candidates the cheapest victim is the
+ * one that rolls back the least work: fewest monitors and synchronizers held, shallowest stack,
+ * least CPU time consumed.
+ */
+public class VictimSelector {
+
+    public static final String INTERRUPT = "INTERRUPT";
+    public static final String INTERRUPT_BEST_EFFORT = "INTERRUPT_BEST_EFFORT";
+
+    // cost weights: one held lock outweighs a deep stack, which outweighs a few ms of CPU
+    private static final double HELD_LOCK_COST = 100;
+    private static final double FRAME_COST = 1;
+    private static final double CPU_MILLI_COST = 0.1;
+
+    private static final Set<String> INTERRUPTIBLE_METHODS = Set.of(
+            "lockInterruptibly", "acquireInterruptibly", "acquireSharedInterruptibly",
+            "tryAcquireNanos", "tryAcquireSharedNanos", "tryLock", "await", "awaitNanos", "awaitUntil");
+
+    private final ThreadMXBean threadMXBean;
+    private final Map<String, AtomicLong[]> outcomes = new ConcurrentHashMap<>();
+
+    public VictimSelector(ThreadMXBean threadMXBean) {
+        this.threadMXBean = threadMXBean;
+    }
+
+    /**
+     * Candidates of a cycle, cheapest first (interruptible ones before the rest).
+     */
+    public List<Candidate> rank(ThreadInfo[] infos) {
+        boolean cpuTime = threadMXBean.isThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+        List<Candidate> candidates = new ArrayList<>();
+        for (ThreadInfo ti : infos) {
+            if (ti == null) continue;
+            int held = ti.getLockedMonitors().length + ti.getLockedSynchronizers().length;
+            int depth = ti.getStackTrace().length;
+            long cpuNanos = cpuTime ? threadMXBean.getThreadCpuTime(ti.getThreadId()) : -1;
+            long cpuMillis = cpuNanos < 0 ? 0 : cpuNanos / 1_000_000;
+            double cost = held * HELD_LOCK_COST + depth * FRAME_COST + cpuMillis * CPU_MILLI_COST;
+            candidates.add(new Candidate(ti.getThreadId(), ti.getThreadName(), isInterruptible(ti),
+                    held, depth, cpuMillis, cost));
+        }
+        candidates.sort(Comparator.comparing((Candidate c) -> !c.interruptible).thenComparingDouble(c -> c.cost));
+        return candidates;
+    }
+
+    /**
+     * Cheapest victim of a cycle, or null when there is none.
+     */
+    public Candidate select(ThreadInfo[] infos) {
+        List<Candidate> ranked = rank(infos);
+        return ranked.isEmpty() ? null : ranked.get(0);
+    }
+
+    /**
+     * Whether the thread waits somewhere an interrupt wakes it: not on a monitor, and inside an
+     * interruptible acquire of a java.util.concurrent lock or condition.
+     */
+    static boolean isInterruptible(ThreadInfo ti) {
+        if (ti.getThreadState() == State.BLOCKED || ti.getLockInfo() == null) {
+            return false;
+        }
+        for (StackTraceElement frame : ti.getStackTrace()) {
+            String cls = frame.getClassName();
+            if (!cls.startsWith("java.util.concurrent.") && !cls.startsWith("jdk.internal.")) {
+                return false; // reached application code without passing an interruptible acquire
+            }
+            if (INTERRUPTIBLE_METHODS.contains(frame.getMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void recordOutcome(String strategy, boolean success) {
+        AtomicLong[] counts = outcomes.computeIfAbsent(strategy, s -> new AtomicLong[] {new AtomicLong(), new AtomicLong()});
+        counts[0].incrementAndGet();
+        if (success) counts[1].incrementAndGet();
+    }
+
+    /**
+     * Attempts, successes and success rate per strategy.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        outcomes.forEach((strategy, counts) -> {
+            long attempts = counts[0].get();
+            long successes = counts[1].get();
+            Map<String, Object> s = new HashMap<>();
+            s.put("attempts", attempts);
+            s.put("successes", successes);
+            s.put("successRate", attempts == 0 ? 0.0 : Math.round(1000.0 * successes / attempts) / 10.0);
+            map.put(strategy, s);
+        });
+        return map;
+    }
+
+    /**
+     * One thread of a cycle with its resolution cost
+     */
+    public static class Candidate {
+        public final long threadId;
+        public final String threadName;
+        public final boolean interruptible;
+        public final int heldLocks;
+        public final int stackDepth;
+        public final long cpuMillis;
+        public final double cost;
+
+        public Candidate(long threadId, String threadName, boolean interruptible, int heldLocks,
+                         int stackDepth, long cpuMillis, double cost) {
+            this.threadId = threadId;
+            this.threadName = threadName;
+            this.interruptible = interruptible;
+            this.heldLocks = heldLocks;
+            this.stackDepth = stackDepth;
+            this.cpuMillis = cpuMillis;
+            this.cost = cost;
+        }
+
+        public String strategy() {
+            return interruptible ? INTERRUPT : INTERRUPT_BEST_EFFORT;
+        }
+
+        @Override
+        public String toString() {
+            return threadName + " (id=" + threadId + ", " + (interruptible ? "interruptible" : "not interruptible")
+                    + ", holds " + heldLocks + ", depth " + stackDepth + ", cpu " + cpuMillis + " ms, cost "
+                    + Math.round(cost) + ")";
+        }
+    }
+}
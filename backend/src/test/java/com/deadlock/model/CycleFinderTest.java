@@ -0,0 +1,65 @@
+package com.deadlock.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class CycleFinderTest {
+
+    @Test
+    void findsEveryIndependentCycleInWaitOrder() {
+        // 5 -> 3 -> 9 -> 5 and 20 -> 21 -> 20; 4 and 30 wait into cycles; 7 waits on a running thread
+        long[] threads = {5, 3, 9, 20, 21, 4, 30, 7, 8};
+        long[] owners  = {3, 9, 5, 21, 20, 5, 4, 8, -1};
+
+        List<List<Long>> cycles = CycleFinder.findCycles(threads, owners, threads.length);
+
+        assertEquals(Set.of(List.of(3L, 9L, 5L), List.of(20L, 21L)), new HashSet<>(cycles));
+    }
+
+    @Test
+    void ignoresChainsEndingOutsideTheSample() {
+        long[] threads = {1, 2, 3};
+        long[] owners  = {2, 3, 99}; // 99 not sampled
+
+        assertTrue(CycleFinder.findCycles(threads, owners, threads.length).isEmpty());
+    }
+
+    @Test
+    void findsTwoThreadCyclesAmongLongTails() {
+        // many waiters chained into the two cycles: tails must not be reported as cycle members
+        int tails = 10_000;
+        long[] threads = new long[tails + 4];
+        long[] owners = new long[tails + 4];
+        threads[0] = 1; owners[0] = 2;
+        threads[1] = 2; owners[1] = 1;
+        threads[2] = 3; owners[2] = 4;
+        threads[3] = 4; owners[3] = 3;
+        for (int i = 0; i < tails; i++) {
+            threads[i + 4] = 100 + i;
+            owners[i + 4] = i == 0 ? 1 : i == 1 ? 3 : 100 + i - 2; // two long chains
+        }
+
+        List<List<Long>> cycles = CycleFinder.findCycles(threads, owners, threads.length);
+
+        assertEquals(Set.of(List.of(1L, 2L), List.of(3L, 4L)), new HashSet<>(cycles));
+    }
+
+    @Test
+    void orderIndependentOfInputOrder() {
+        long[] threads = {12, 11, 10};
+        long[] owners  = {10, 12, 11};
+
+        assertEquals(List.of(List.of(10L, 11L, 12L)), CycleFinder.findCycles(threads, owners, threads.length));
+    }
+
+    @Test
+    void selfWaitIsACycle() {
+        assertEquals(List.of(List.of(6L)), CycleFinder.findCycles(new long[] {6}, new long[] {6}, 1));
+    }
+}
@@ -0,0 +1,82 @@
+package com.deadlock.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+class LongLongMapTest {
+
+    @Test
+    void collidingKeysSurviveRemovalInTheMiddleOfTheirChain() {
+        // home slot 15 of a 16-slot table, so the probe chain wraps around to slot 0
+        long[] colliding = keysWithHomeSlot(15, 15, 5);
+        LongLongMap map = new LongLongMap(); // 16 slots, grows at 12 entries
+        for (long k : colliding) map.put(k, k * 10);
+
+        assertEquals(colliding[2] * 10, map.remove(colliding[2]));
+        assertEquals(WaitForGraph.NONE, map.get(colliding[2]));
+        for (long k : colliding) {
+            if (k != colliding[2]) assertEquals(k * 10, map.get(k));
+        }
+        assertEquals(4, map.size());
+        assertEquals(WaitForGraph.NONE, map.remove(colliding[2]));
+    }
+
+    @Test
+    void growsAndKeepsEveryEntry() {
+        LongLongMap map = new LongLongMap(4);
+        for (long k = 0; k < 10_000; k++) map.put(k * 31, k);
+        for (long k = 0; k < 10_000; k++) map.put(k * 31, k + 1); // overwrite, no new entries
+
+        assertEquals(10_000, map.size());
+        for (long k = 0; k < 10_000; k++) assertEquals(k + 1, map.get(k * 31));
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(LongStream.range(0, 10_000).map(k -> k * 31).toArray(), keys);
+    }
+
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        Random random = new Random(42);
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) - 1_000; // small range: dense chains and negative keys
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? WaitForGraph.NONE : removed, map.remove(key));
+            } else {
+                long value = random.nextInt(1_000_000);
+                expected.put(key, value);
+                map.put(key, value);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((k, v) -> assertEquals(v, map.get(k)));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-7, map.getOrDefault(expected.keySet().iterator().next(), -7));
+    }
+
+    /**
+     * Keys whose home slot (same hash as LongLongMap) in a table of {@code mask + 1} slots is {@code slot}.
+     */
+    private static long[] keysWithHomeSlot(int slot, int mask, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long k = 1; keys.size() < count; k++) {
+            long h = k * 0x9E3779B97F4A7C15L;
+            if (((int) (h ^ (h >>> 32)) & mask) == slot) keys.add(k);
+        }
+        return keys.stream().mapToLong(Long::longValue).toArray();
+    }
+}
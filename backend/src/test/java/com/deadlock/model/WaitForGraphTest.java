@@ -0,0 +1,127 @@
+package com.deadlock.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WaitForGraphTest {
+
+    @Test
+    void cycleClosesOnTheLastAddWait() {
+        WaitForGraph graph = new WaitForGraph();
+        graph.addWait(7, 100, 3);
+        graph.addWait(3, 200, 5);
+        assertEquals(0, graph.cycleCount());
+
+        graph.addWait(5, 300, 7); // 7 -> 3 -> 5 -> 7
+
+        assertTrue(graph.isInCycle(3) && graph.isInCycle(5) && graph.isInCycle(7));
+        List<long[]> cycles = graph.getCycles();
+        assertEquals(1, cycles.size());
+        assertArrayEquals(new long[] {3, 5, 7}, cycles.get(0)); // wait order, smallest id first
+        assertEquals(3, graph.ownerOf(100));
+    }
+
+    @Test
+    void tailWaitingIntoACycleIsNotAMember() {
+        WaitForGraph graph = new WaitForGraph();
+        graph.addWait(1, 100, 2);
+        graph.addWait(2, 200, 1);
+        graph.addWait(9, 100, 2);
+
+        assertEquals(1, graph.cycleCount());
+        assertFalse(graph.isInCycle(9));
+    }
+
+    @Test
+    void ownerChangeDissolvesTheCycle() {
+        WaitForGraph graph = new WaitForGraph();
+        graph.addWait(1, 100, 2);
+        graph.addWait(2, 200, 1);
+        assertEquals(1, graph.cycleCount());
+
+        graph.addWait(2, 200, 4); // same lock, now reported as owned by 4
+
+        assertEquals(0, graph.cycleCount());
+        assertFalse(graph.isInCycle(1));
+        assertFalse(graph.isInCycle(2));
+        assertEquals(4, graph.ownerOf(200));
+
+        graph.addWait(2, 200, 1); // owner back to 1: the cycle closes again
+        assertEquals(1, graph.cycleCount());
+        graph.releaseHold(200, 1);
+        assertEquals(0, graph.cycleCount());
+        assertEquals(WaitForGraph.NONE, graph.ownerOf(200));
+    }
+
+    @Test
+    void removeWaitAndRemoveThreadBreakCyclesAndDropIdleLocks() {
+        WaitForGraph graph = new WaitForGraph();
+        graph.addWait(1, 100, 2);
+        graph.addWait(2, 200, 1);
+
+        graph.removeWait(1); // 1 acquired its lock
+        assertFalse(graph.isWaiting(1));
+        assertEquals(0, graph.cycleCount());
+        assertEquals(WaitForGraph.NONE, graph.ownerOf(100)); // nobody waits on it any more
+        assertTrue(graph.isWaiting(2));
+
+        graph.addWait(1, 100, 2);
+        assertEquals(1, graph.cycleCount());
+        graph.removeThread(2);
+        assertEquals(0, graph.cycleCount());
+        assertEquals(1, graph.waiterCount());
+        assertEquals(WaitForGraph.NONE, graph.waitingOn(2));
+    }
+
+    @Test
+    void completeApplyDropsWaitersMissingFromIt() {
+        WaitForGraph graph = new WaitForGraph();
+        long[] all = {1, 100, 2, 2, 200, 1, 3, 100, 2};
+        graph.applyWaits(all, 0, 3, 3);
+        assertEquals(3, graph.waiterCount());
+        assertEquals(1, graph.cycleCount());
+
+        long[] without2 = {1, 100, 2, 3, 100, 2};
+        graph.applyWaits(without2, 0, 2, 3); // thread 2 died
+
+        assertFalse(graph.isWaiting(2));
+        assertEquals(0, graph.cycleCount());
+        assertEquals(2, graph.waiterCount());
+        assertEquals(WaitForGraph.NONE, graph.ownerOf(200));
+    }
+
+    @Test
+    void applyWaitsCountsOnlyRealChanges() {
+        WaitForGraph graph = new WaitForGraph();
+        // header of two longs, then records of four longs (the last one is ignored)
+        long[] data = {42, 42,
+                10, 100, 11, 0,
+                11, 101, 12, 0,
+                12, 102, 10, 0};
+
+        int changes = graph.applyWaits(data, 2, 3, 4);
+
+        assertTrue(changes > 0);
+        assertEquals(changes, graph.lastChangeCount());
+        assertArrayEquals(new long[] {10, 11, 12}, graph.getCycles().get(0));
+        long version = graph.version();
+
+        assertEquals(0, graph.applyWaits(data, 2, 3, 4));
+        assertEquals(version, graph.version());
+
+        long[] waits = graph.waits();
+        assertEquals(3 * WaitForGraph.WAIT_RECORD, waits.length);
+        for (int at = 0; at < waits.length; at += WaitForGraph.WAIT_RECORD) {
+            assertEquals(graph.waitingOn(waits[at]), waits[at + 1]);
+            assertEquals(graph.ownerOf((int) waits[at + 1]), waits[at + 2]);
+        }
+        assertNull(graph.lockClassName(100)); // flat records carry no class names
+    }
+}
@@ -0,0 +1,162 @@
+package com.deadlock.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DeadlockJournalTest {
+
+    private static final int HEADER_SIZE = 64;
+    private static final int H_WRITE_POS = 36;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversRecordsAfterRestart() {
+        DeadlockJournal journal = open();
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(1L, 2L)));
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(3L, 4L, 5L)));
+        journal.close();
+
+        DeadlockJournal reopened = open();
+        assertEquals(2, reopened.recordCount());
+        List<DeadlockJournal.JournalRecord> records = reopened.read(0, Long.MAX_VALUE, 10);
+        assertEquals(2, records.size());
+        assertArrayEquals(new long[] {3, 4, 5}, sorted(records.get(1).threads));
+    }
+
+    @Test
+    void truncatesAtCorruptedRecordLength() throws IOException {
+        DeadlockJournal journal = open();
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(1L, 2L)));
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(3L, 4L)));
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(5L, 6L)));
+        journal.close();
+
+        Path segment = onlySegment();
+        int second = HEADER_SIZE + recordLengthAt(segment, HEADER_SIZE);
+        writeInt(segment, second, 1); // shorter than any record header
+
+        DeadlockJournal reopened = open();
+        List<DeadlockJournal.JournalRecord> records = reopened.read(0, Long.MAX_VALUE, 10);
+        assertEquals(1, records.size());
+        assertArrayEquals(new long[] {1, 2}, sorted(records.get(0).threads));
+        assertEquals(1, reopened.recordCount());
+
+        // appends continue from the truncated end and survive another restart
+        reopened.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(7L, 8L)));
+        reopened.close();
+        List<DeadlockJournal.JournalRecord> after = open().read(0, Long.MAX_VALUE, 10);
+        assertEquals(2, after.size());
+        assertArrayEquals(new long[] {7, 8}, sorted(after.get(1).threads));
+    }
+
+    @Test
+    void ignoresLengthRunningPastWritePosition() throws IOException {
+        DeadlockJournal journal = open();
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(1L, 2L)));
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(3L, 4L)));
+        journal.close();
+
+        Path segment = onlySegment();
+        int second = HEADER_SIZE + recordLengthAt(segment, HEADER_SIZE);
+        writeInt(segment, second, Integer.MAX_VALUE);
+        writeInt(segment, H_WRITE_POS, Integer.MAX_VALUE);
+
+        DeadlockJournal reopened = open();
+        assertEquals(1, reopened.read(0, Long.MAX_VALUE, 10).size());
+    }
+
+    @Test
+    void dropsRecordLargerThanSegment() {
+        DeadlockJournal journal = open();
+        Set<Long> huge = LongStream.range(0, 200_000).boxed().collect(Collectors.toSet()); // ~1.6 MB payload
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(huge));
+        journal.appendDeadlock(new DeadlockService.DeadlockEvent(Set.of(1L, 2L)));
+
+        assertEquals(1, journal.recordCount());
+        assertEquals(1, journal.read(0, Long.MAX_VALUE, 10).size());
+    }
+
+    @Test
+    void rollsPastMaxSegmentsAndDeletesTheOldest() throws IOException {
+        DeadlockJournal journal = new DeadlockJournal(true, dir.toString(), 1, 2);
+        for (int i = 0; i < 7; i++) {
+            journal.appendDeadlock(new DeadlockService.DeadlockEvent(threads(i))); // ~400 KB: two per segment
+        }
+
+        assertEquals(2, segmentFiles().size());
+        assertEquals(3, journal.recordCount());
+        List<DeadlockJournal.JournalRecord> records = journal.read(0, Long.MAX_VALUE, 10);
+        assertEquals(3, records.size());
+        assertEquals(4 * 100_000L, sorted(records.get(0).threads)[0]);
+        journal.close();
+
+        // a segment a previous run could not delete is trimmed at recovery
+        Files.copy(segmentFiles().get(0), dir.resolve(String.format("journal-%020d.seg", 0)));
+        DeadlockJournal reopened = new DeadlockJournal(true, dir.toString(), 1, 2);
+        assertEquals(2, segmentFiles().size());
+        assertEquals(3, reopened.recordCount());
+        reopened.appendDeadlock(new DeadlockService.DeadlockEvent(threads(7)));
+        assertEquals(2, segmentFiles().size());
+        assertEquals(4 * 100_000L, sorted(reopened.read(0, Long.MAX_VALUE, 10).get(0).threads)[0]);
+    }
+
+    private DeadlockJournal open() {
+        return new DeadlockJournal(true, dir.toString(), 1, 4);
+    }
+
+    private static Set<Long> threads(int batch) {
+        return LongStream.range(batch * 100_000L, batch * 100_000L + 50_000).boxed().collect(Collectors.toSet());
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static int recordLengthAt(Path file, int pos) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(4);
+            ch.read(buf, pos);
+            return buf.getInt(0);
+        }
+    }
+
+    private static void writeInt(Path file, int pos, int value) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).putInt(0, value), pos);
+        }
+    }
+
+    private static long[] sorted(long[] values) {
+        long[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
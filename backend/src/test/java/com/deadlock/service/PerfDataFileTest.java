@@ -0,0 +1,73 @@
+package com.deadlock.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PerfDataFileTest {
+
+    @TempDir
+    Path dir;
+
+    private Path own;
+
+    @BeforeEach
+    void findOwnPerfData() {
+        own = Path.of(System.getProperty("java.io.tmpdir"), "hsperfdata_" + System.getProperty("user.name"),
+                String.valueOf(ProcessHandle.current().pid()));
+        assumeTrue(Files.isReadable(own), "test JVM publishes no perfdata (-XX:-UsePerfData?)");
+    }
+
+    @Test
+    void readsCountersOfThisJvm() throws IOException {
+        PerfDataFile perf = PerfDataFile.open(own);
+
+        assertNotNull(perf);
+        long live = perf.getLong("java.threads.live");
+        assertTrue(live > 0 && live <= perf.getLong("java.threads.livePeak"));
+        assertTrue(perf.heapUsed() > 0);
+        assertEquals(System.getProperty("java.version"), perf.getString("java.property.java.version"));
+        assertEquals(-1, perf.getLong("no.such.counter"));
+    }
+
+    @Test
+    void truncatedFileKeepsTheEntriesThatFit() throws IOException {
+        byte[] bytes = Files.readAllBytes(own);
+        Path truncated = dir.resolve("truncated");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 8));
+
+        PerfDataFile perf = PerfDataFile.open(truncated);
+
+        assertNotNull(perf);
+        assertEquals(-1, perf.getLong("no.such.counter"));
+    }
+
+    @Test
+    void entryOffsetsPastTheMappingAreIgnored() throws IOException {
+        byte[] bytes = Files.readAllBytes(own);
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(bytes[4] == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int first = buf.getInt(24);
+        buf.putInt(first + 4, Integer.MAX_VALUE); // name offset of the first entry
+        buf.putInt(first + buf.getInt(first) + 16, bytes.length); // data offset of the second
+        Path corrupt = dir.resolve("corrupt");
+        Files.write(corrupt, bytes);
+
+        assertNotNull(PerfDataFile.open(corrupt));
+
+        buf.putInt(24, bytes.length - 4); // entry table header running past the end
+        Files.write(corrupt, bytes);
+        assertEquals(-1, PerfDataFile.open(corrupt).getLong("java.threads.live"));
+    }
+}
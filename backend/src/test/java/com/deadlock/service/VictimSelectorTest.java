@@ -0,0 +1,116 @@
+package com.deadlock.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.LockInfo;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class VictimSelectorTest {
+
+    private static final StackTraceElement APP_FRAME = frame("com.example.Transfer", "run");
+
+    private final VictimSelector selector = new VictimSelector(mock(ThreadMXBean.class)); // no CPU time
+
+    @Test
+    void aqsWaiterOutranksMonitorWaiter() {
+        ThreadInfo monitor = thread(1, Thread.State.BLOCKED, new LockInfo("java.lang.Object", 0x11), 0, 0,
+                APP_FRAME);
+        ThreadInfo aqs = thread(2, Thread.State.WAITING,
+                new LockInfo("java.util.concurrent.locks.ReentrantLock$NonfairSync", 0x22), 3, 2,
+                frame("jdk.internal.misc.Unsafe", "park"),
+                frame("java.util.concurrent.locks.AbstractQueuedSynchronizer", "acquireInterruptibly"),
+                frame("java.util.concurrent.locks.ReentrantLock", "lockInterruptibly"),
+                APP_FRAME);
+
+        assertTrue(VictimSelector.isInterruptible(aqs));
+        assertFalse(VictimSelector.isInterruptible(monitor));
+        // interruptible first, even though it holds more and its stack is deeper
+        VictimSelector.Candidate victim = selector.select(new ThreadInfo[] {monitor, aqs});
+        assertEquals(2, victim.threadId);
+        assertEquals(VictimSelector.INTERRUPT, victim.strategy());
+    }
+
+    @Test
+    void plainLockIsNotInterruptible() {
+        ThreadInfo plain = thread(3, Thread.State.WAITING,
+                new LockInfo("java.util.concurrent.locks.ReentrantLock$NonfairSync", 0x33), 0, 0,
+                frame("jdk.internal.misc.Unsafe", "park"),
+                frame("java.util.concurrent.locks.AbstractQueuedSynchronizer", "acquire"),
+                frame("java.util.concurrent.locks.ReentrantLock", "lock"),
+                APP_FRAME);
+
+        assertFalse(VictimSelector.isInterruptible(plain));
+        assertEquals(VictimSelector.INTERRUPT_BEST_EFFORT, selector.select(new ThreadInfo[] {plain}).strategy());
+    }
+
+    @Test
+    void fewerHeldLocksWinsAtEqualInterruptibility() {
+        ThreadInfo holdsThree = thread(4, Thread.State.BLOCKED, new LockInfo("java.lang.Object", 0x44), 2, 1,
+                APP_FRAME);
+        ThreadInfo holdsOne = thread(5, Thread.State.BLOCKED, new LockInfo("java.lang.Object", 0x55), 1, 0,
+                APP_FRAME, APP_FRAME, APP_FRAME, APP_FRAME); // deeper stack costs less than a held lock
+
+        List<VictimSelector.Candidate> ranked = selector.rank(new ThreadInfo[] {holdsThree, null, holdsOne});
+
+        assertEquals(2, ranked.size());
+        assertEquals(5, ranked.get(0).threadId);
+        assertEquals(1, ranked.get(0).heldLocks);
+        assertEquals(3, ranked.get(1).heldLocks);
+        assertTrue(ranked.get(0).cost < ranked.get(1).cost);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void outcomesAddUpPerStrategy() {
+        selector.recordOutcome(VictimSelector.INTERRUPT, true);
+        selector.recordOutcome(VictimSelector.INTERRUPT, true);
+        selector.recordOutcome(VictimSelector.INTERRUPT, false);
+        selector.recordOutcome(VictimSelector.INTERRUPT_BEST_EFFORT, false);
+
+        Map<String, Object> map = selector.toMap();
+
+        Map<String, Object> interrupt = (Map<String, Object>) map.get(VictimSelector.INTERRUPT);
+        assertEquals(3L, interrupt.get("attempts"));
+        assertEquals(2L, interrupt.get("successes"));
+        assertEquals(66.7, interrupt.get("successRate"));
+        Map<String, Object> bestEffort = (Map<String, Object>) map.get(VictimSelector.INTERRUPT_BEST_EFFORT);
+        assertEquals(1L, bestEffort.get("attempts"));
+        assertEquals(0L, bestEffort.get("successes"));
+        assertEquals(0.0, bestEffort.get("successRate"));
+    }
+
+    private static ThreadInfo thread(long id, Thread.State state, LockInfo waitingOn, int monitors,
+                                     int synchronizers, StackTraceElement... stack) {
+        ThreadInfo ti = mock(ThreadInfo.class);
+        when(ti.getThreadId()).thenReturn(id);
+        when(ti.getThreadName()).thenReturn("worker-" + id);
+        when(ti.getThreadState()).thenReturn(state);
+        when(ti.getLockInfo()).thenReturn(waitingOn);
+        when(ti.getStackTrace()).thenReturn(stack);
+        MonitorInfo[] held = new MonitorInfo[monitors];
+        for (int i = 0; i < monitors; i++) {
+            held[i] = new MonitorInfo("java.lang.Object", (int) id * 100 + i, 0, stack[stack.length - 1]);
+        }
+        when(ti.getLockedMonitors()).thenReturn(held);
+        LockInfo[] owned = new LockInfo[synchronizers];
+        for (int i = 0; i < synchronizers; i++) {
+            owned[i] = new LockInfo("java.util.concurrent.locks.ReentrantLock$NonfairSync", (int) id * 1000 + i);
+        }
+        when(ti.getLockedSynchronizers()).thenReturn(owned);
+        return ti;
+    }
+
+    private static StackTraceElement frame(String className, String method) {
+        return new StackTraceElement(className, method, null, -1);
+    }
+}
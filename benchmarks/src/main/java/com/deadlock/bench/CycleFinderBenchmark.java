@@ -0,0 +1,80 @@
+package com.deadlock.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.deadlock.model.CycleFinder;
+
+/**
+ * Tarjan cycle extraction over synthetic thread -> owner graphs.
+ *
+ * {@code waitingPercent} of the threads wait on a lock held by another random thread, and
+ * {@code cycles} independent deadlock cycles of two to five threads are planted on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CycleFinderBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int threads;
+
+    @Param({"10", "100"})
+    public int waitingPercent;
+
+    @Param({"1", "16"})
+    public int cycles;
+
+    private long[] threadIds;
+    private long[] ownerIds;
+
+    @Setup(Level.Trial)
+    public void buildGraph() {
+        Random random = new Random(42);
+        threadIds = new long[threads];
+        ownerIds = new long[threads];
+        for (int i = 0; i < threads; i++) {
+            threadIds[i] = 1000 + i;
+            ownerIds[i] = -1;
+        }
+
+        // plant the cycles first, on the lowest indexes
+        int next = 0;
+        for (int c = 0; c < cycles && next < threads; c++) {
+            int length = Math.min(2 + random.nextInt(4), threads - next);
+            for (int k = 0; k < length; k++) {
+                ownerIds[next + k] = threadIds[next + (k + 1) % length];
+            }
+            next += length;
+        }
+
+        // background contention: waiters pointing at random threads, drawn so they never close a cycle
+        for (int i = next; i < threads; i++) {
+            if (random.nextInt(100) < waitingPercent && i > 0) {
+                ownerIds[i] = threadIds[random.nextInt(i)];
+            }
+        }
+    }
+
+    @Benchmark
+    public List<List<Long>> tarjan() {
+        return CycleFinder.findCycles(threadIds, ownerIds, threads);
+    }
+}
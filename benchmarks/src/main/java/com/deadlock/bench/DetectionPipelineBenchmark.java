@@ -0,0 +1,139 @@
+package com.deadlock.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.deadlock.model.DeadlockSnapshot;
+import com.deadlock.service.DeadlockJournal;
+import com.deadlock.service.DeadlockService;
+import com.deadlock.service.DetectorMetrics;
+import com.deadlock.service.FrameDictionary;
+import com.deadlock.service.JMXProcessMonitor;
+import com.deadlock.service.JmxConnectionManager;
+import com.deadlock.service.SnapshotPublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Per-stage cost of one detection pass against a live {@link ThreadPopulation} in this JVM:
+ * the deadlock probe, the thread dumps, {@link DeadlockSnapshot#from}, Jackson serialization
+ * and the whole {@link DeadlockService#detectDeadlocks()} (tiering and the coalesce window off,
+ * so every call does the full dump unless it joins a concurrent one). Run with {@code -prof gc}
+ * for allocation rate per stage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss256k")
+public class DetectionPipelineBenchmark {
+
+    @Param({"100", "1000", "20000"})
+    public int threads;
+
+    @Param({"0", "1", "16"})
+    public int cycles;
+
+    private ThreadPopulation population;
+    private ThreadMXBean threadMXBean;
+    private JmxConnectionManager connections;
+    private JMXProcessMonitor monitor;
+    private DeadlockJournal journal;
+    private DeadlockService service;
+    private ObjectMapper mapper;
+    private long[] allIds;
+    private long[] deadlockedIds;
+    private ThreadInfo[] deadlockedInfos;
+    private DeadlockSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        population = ThreadPopulation.start(threads, cycles);
+        threadMXBean = ManagementFactory.getThreadMXBean();
+        mapper = new ObjectMapper();
+
+        FrameDictionary frames = new FrameDictionary(8192);
+        DetectorMetrics metrics = new DetectorMetrics();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+        connections = new JmxConnectionManager(500, 30000, 10000, 5000);
+        monitor = new JMXProcessMonitor(connections, metrics);
+        journal = new DeadlockJournal(false, "target/bench-journal", 1, 1);
+        service = new DeadlockService(template, new SnapshotPublisher(template, frames, metrics), monitor,
+                journal, frames, metrics, 1024, 0, 2000, 250, 5000, 10000, 16, 500);
+        service.toggleAutoResolution(); // never interrupt the population
+        service.configureDetection(false, 0); // every call measures a full capture
+
+        allIds = threadMXBean.getAllThreadIds();
+        long[] found = threadMXBean.findDeadlockedThreads();
+        deadlockedIds = found == null ? new long[0] : found;
+        deadlockedInfos = threadMXBean.getThreadInfo(deadlockedIds, true, true);
+        snapshot = service.detectDeadlocks();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // no container here to run the @PreDestroy methods: stop the executors the trial started
+        service.shutdown();
+        monitor.shutdown();
+        connections.shutdown();
+        journal.close();
+        population.close();
+    }
+
+    @Benchmark
+    public long[] probe() {
+        return threadMXBean.findDeadlockedThreads();
+    }
+
+    @Benchmark
+    public ThreadInfo[] lightDump() {
+        return threadMXBean.getThreadInfo(allIds, false, false, 0);
+    }
+
+    @Benchmark
+    public ThreadInfo[] deadlockedDump() {
+        return threadMXBean.getThreadInfo(deadlockedIds, true, true);
+    }
+
+    @Benchmark
+    public DeadlockSnapshot snapshotFrom() {
+        return DeadlockSnapshot.from(deadlockedInfos);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(snapshot);
+    }
+
+    @Benchmark
+    public DeadlockSnapshot detectDeadlocks() {
+        return service.detectDeadlocks();
+    }
+
+    /**
+     * Four callers at once, as tick, REST and resolver threads do: they share in-flight captures.
+     */
+    @Benchmark
+    @Threads(4)
+    public DeadlockSnapshot detectDeadlocksConcurrent() {
+        return service.detectDeadlocks();
+    }
+}
@@ -0,0 +1,110 @@
+package com.deadlock.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lock-heavy workload without the lock-order agent; {@link LockOverheadWithAgentBenchmark}
+ * runs the same methods in a fork with the agent loaded, so the two rows give the overhead.
+ *
+ * Each operation takes two nested locks around a small map update - the shape of code that
+ * lock-order inversions come from.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockOverheadBenchmark {
+
+    private final Object outer = new Object();
+    private final Object inner = new Object();
+    private final ReentrantLock outerLock = new ReentrantLock();
+    private final ReentrantLock innerLock = new ReentrantLock();
+    private final Map<Integer, Integer> map = new HashMap<>();
+    private int key;
+
+    @Benchmark
+    public int nestedMonitors() {
+        synchronized (outer) {
+            synchronized (inner) {
+                return update();
+            }
+        }
+    }
+
+    @Benchmark
+    public int nestedReentrantLocks() {
+        outerLock.lock();
+        try {
+            innerLock.lock();
+            try {
+                return update();
+            } finally {
+                innerLock.unlock();
+            }
+        } finally {
+            outerLock.unlock();
+        }
+    }
+
+    @Benchmark
+    public int synchronizedMethod() {
+        synchronized (outer) {
+            return guardedUpdate();
+        }
+    }
+
+    /**
+     * Nested locks around a critical section that does some real work (~0.5 us), which is what
+     * lock-heavy services look like; the micro cases above isolate the per-acquisition cost.
+     */
+    @Benchmark
+    public int nestedMonitorsWithWork() {
+        synchronized (outer) {
+            synchronized (inner) {
+                Blackhole.consumeCPU(256);
+                return update();
+            }
+        }
+    }
+
+    @Benchmark
+    public int nestedReentrantLocksWithWork() {
+        outerLock.lock();
+        try {
+            innerLock.lock();
+            try {
+                Blackhole.consumeCPU(256);
+                return update();
+            } finally {
+                innerLock.unlock();
+            }
+        } finally {
+            outerLock.unlock();
+        }
+    }
+
+    private synchronized int guardedUpdate() {
+        return update();
+    }
+
+    private int update() {
+        key = (key + 1) & 1023;
+        return map.merge(key, 1, Integer::sum);
+    }
+}
@@ -0,0 +1,11 @@
+package com.deadlock.bench;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * {@link LockOverheadBenchmark} with the lock-order agent loaded (path relative to
+ * {@code benchmarks/}; build {@code agent/} first).
+ */
+@Fork(value = 1, jvmArgsAppend = "-javaagent:../agent/target/deadlock-agent.jar=include=com.deadlock.bench.")
+public class LockOverheadWithAgentBenchmark extends LockOverheadBenchmark {
+}
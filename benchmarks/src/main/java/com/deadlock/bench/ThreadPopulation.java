@@ -0,0 +1,133 @@
+package com.deadlock.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A live population of platform threads for benchmarking detection against the current JVM.
+ *
+ * {@code idle} threads park on a latch (WAITING), and {@code cycles} deadlock cycles of two or
+ * three threads are formed on top. Cycles rotate through monitor-only, {@link ReentrantLock}-only
+ * and mixed lock kinds, so both {@code getLockedMonitors()} and {@code getLockedSynchronizers()}
+ * are exercised. Deadlocked threads can never be released; all threads are daemons and JMH forks
+ * a fresh JVM per parameter set, so they die with the fork.
+ */
+public class ThreadPopulation implements AutoCloseable {
+
+    private static final long STACK_SIZE = 256 * 1024;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Thread> threads = new ArrayList<>();
+    private int deadlockedThreads;
+
+    /**
+     * Start {@code total} threads in all, {@code cycles} deadlock cycles among them.
+     * Cycles are capped at {@code total / 3} so every cycle fits.
+     */
+    public static ThreadPopulation start(int total, int cycles) throws InterruptedException {
+        ThreadPopulation population = new ThreadPopulation();
+        int planted = Math.min(cycles, total / 3);
+        for (int c = 0; c < planted; c++) {
+            population.startCycle(c, 2 + c % 2);
+        }
+        while (population.threads.size() < total) {
+            population.startIdle();
+        }
+        population.awaitDeadlocks();
+        return population;
+    }
+
+    public int size() {
+        return threads.size();
+    }
+
+    public int deadlockedThreads() {
+        return deadlockedThreads;
+    }
+
+    /**
+     * Release the idle threads (deadlocked ones stay stuck until the JVM exits).
+     */
+    @Override
+    public void close() {
+        release.countDown();
+    }
+
+    private void startIdle() {
+        int n = threads.size();
+        start("bench-idle-" + n, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+    }
+
+    private void startCycle(int cycle, int length) {
+        Object[] locks = new Object[length];
+        for (int k = 0; k < length; k++) {
+            switch (cycle % 3) {
+                case 0 -> locks[k] = new Object();
+                case 1 -> locks[k] = new ReentrantLock();
+                default -> locks[k] = k % 2 == 0 ? new Object() : new ReentrantLock();
+            }
+        }
+        CountDownLatch allHolding = new CountDownLatch(length);
+        for (int k = 0; k < length; k++) {
+            Object first = locks[k];
+            Object second = locks[(k + 1) % length];
+            start("bench-cycle-" + cycle + "-" + k, () -> hold(first, () -> {
+                allHolding.countDown();
+                try {
+                    allHolding.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                hold(second, () -> { });
+            }));
+        }
+        deadlockedThreads += length;
+    }
+
+    private static void hold(Object lock, Runnable body) {
+        if (lock instanceof ReentrantLock reentrantLock) {
+            reentrantLock.lock();
+            try {
+                body.run();
+            } finally {
+                reentrantLock.unlock();
+            }
+        } else {
+            synchronized (lock) {
+                body.run();
+            }
+        }
+    }
+
+    private void start(String name, Runnable body) {
+        Thread t = new Thread(null, body, name, STACK_SIZE);
+        t.setDaemon(true);
+        t.start();
+        threads.add(t);
+    }
+
+    private void awaitDeadlocks() throws InterruptedException {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            long[] ids = threadMXBean.findDeadlockedThreads();
+            int found = ids == null ? 0 : ids.length;
+            if (found >= deadlockedThreads) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("only " + found + " of " + deadlockedThreads + " threads deadlocked");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
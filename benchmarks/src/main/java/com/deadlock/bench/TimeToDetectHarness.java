@@ -0,0 +1,286 @@
+package com.deadlock.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ThreadInfo;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import com.deadlock.service.DetectorMetrics;
+import com.deadlock.service.JMXProcessMonitor;
+import com.deadlock.service.JmxConnectionManager;
+
+/**
+ * End-to-end time-to-detect against a real target JVM.
+ *
+ * For every polling mode, starts {@code samples/LoadGenerator.java} in a fresh JVM, attaches a
+ * {@link JMXProcessMonitor} to it the way the backend does (100 ms tick, per-target adaptive
+ * interval) and timestamps, from the poll results, when each injected cycle is first reported
+ * and when a released cycle stops being reported. Timestamps on both sides are wall-clock epoch
+ * nanoseconds, so the distributions include attach-free JMX latency, the polling interval and
+ * the detection pass itself.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.deadlock.bench.TimeToDetectHarness \
+ *     --modes adaptive,fixed,wait-graph --agent ../agent/target/deadlock-agent.jar \
+ *     -- --workers 200 --deadlocks 20 --interval-ms 2000
+ * </pre>
+ *
+ * Everything after {@code --} is passed to the generator.
+ */
+public class TimeToDetectHarness {
+
+    private static final String READY = "READY";
+    private static final String INJECT = "INJECT";
+    private static final String RELEASE = "RELEASE";
+    private static final String DONE = "DONE";
+    private static final String WAIT_GRAPH_MBEAN = "com.deadlock.agent:type=WaitGraph";
+    private static final long WARM_UP_MS = 60000;
+
+    public static void main(String[] args) throws Exception {
+        String modes = "adaptive,fixed,wait-graph";
+        String generator = "../samples/LoadGenerator.java";
+        String agent = "../agent/target/deadlock-agent.jar";
+        long fixedMs = 250;
+        List<String> generatorArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--modes" -> modes = args[++i];
+                case "--generator" -> generator = args[++i];
+                case "--agent" -> agent = args[++i];
+                case "--fixed-ms" -> fixedMs = Long.parseLong(args[++i]);
+                case "--" -> {
+                    generatorArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                    i = args.length;
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        for (String mode : modes.split(",")) {
+            Run run = new Run(mode.trim());
+            switch (run.mode) {
+                case "adaptive" -> {
+                    // backend defaults: 2000 ms initial, 250..5000 ms, no wait-graph MBean in the target
+                }
+                case "fixed" -> {
+                    run.monitor.configurePolling(fixedMs, fixedMs, fixedMs);
+                }
+                case "wait-graph" -> {
+                    if (!new File(agent).isFile()) {
+                        System.out.println("Skipping wait-graph: agent jar not found at " + agent + " (build agent/ first)");
+                        continue;
+                    }
+                    run.waitGraphMode = true;
+                    run.monitor.configureWaitGraph(true, true, agent);
+                }
+                default -> throw new IllegalArgumentException("Unknown mode: " + run.mode);
+            }
+            run.execute(generator, generatorArgs);
+            run.report();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * One generator JVM polled in one mode
+     */
+    private static class Run {
+        final String mode;
+        final JmxConnectionManager connections = new JmxConnectionManager(500, 30000, 10000, 5000);
+        final JMXProcessMonitor monitor = new JMXProcessMonitor(connections, new DetectorMetrics());
+
+        // generator events, by cycle sequence number
+        final Map<Integer, Long> injectedAt = new ConcurrentHashMap<>();
+        final Map<Integer, Long> releasedAt = new ConcurrentHashMap<>();
+        final Map<Integer, long[]> members = new ConcurrentHashMap<>();
+        // detector view, by thread id: first poll reporting it deadlocked, first later poll not reporting it
+        final Map<Long, Long> firstReported = new ConcurrentHashMap<>();
+        final Map<Long, Long> firstCleared = new ConcurrentHashMap<>();
+        Map<String, Object> pollStatus = Map.of();
+
+        boolean waitGraphMode;
+
+        Run(String mode) {
+            this.mode = mode;
+            monitor.configureWaitGraph(false, false, "");
+            monitor.configureConnectWait(WARM_UP_MS);
+        }
+
+        void execute(String generator, List<String> generatorArgs) throws Exception {
+            List<String> command = new ArrayList<>();
+            command.add(ProcessHandle.current().info().command().orElse("java"));
+            command.add("-XX:+EnableDynamicAgentLoading");
+            command.add(generator);
+            command.add("--await-start");
+            command.add("true");
+            command.addAll(generatorArgs);
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+            monitor.addPollListener(info -> {
+                long now = epochNanos();
+                Set<Long> reported = new HashSet<>();
+                if (info.hasDeadlock && info.threadInfos != null) {
+                    for (ThreadInfo t : info.threadInfos) {
+                        if (t != null) reported.add(t.getThreadId());
+                    }
+                }
+                for (Long tid : reported) {
+                    firstReported.putIfAbsent(tid, now);
+                }
+                for (Long tid : firstReported.keySet()) {
+                    if (!reported.contains(tid)) firstCleared.putIfAbsent(tid, now);
+                }
+            });
+            ScheduledExecutorService tick = Executors.newSingleThreadScheduledExecutor();
+            tick.scheduleAtFixedRate(monitor::pollMonitoredProcesses, 100, 100, TimeUnit.MILLISECONDS);
+
+            System.out.println("== " + mode + ": " + String.join(" ", command));
+            boolean done = false;
+            String pid = null;
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    switch (parts[0]) {
+                        case READY -> {
+                            pid = parts[1];
+                            monitor.startMonitoring(pid);
+                            warmUp(pid);
+                            proceed(process);
+                        }
+                        case INJECT -> {
+                            int seq = Integer.parseInt(parts[1]);
+                            members.put(seq, Arrays.stream(parts[4].split(",")).mapToLong(Long::parseLong).toArray());
+                            injectedAt.put(seq, Long.parseLong(parts[2]));
+                        }
+                        case RELEASE -> releasedAt.put(Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+                        case DONE -> {
+                            done = true;
+                            tick.shutdownNow();
+                            pollStatus = statusOf(pid);
+                            monitor.stopMonitoring(pid);
+                            proceed(process);
+                        }
+                        default -> System.out.println("   generator: " + line);
+                    }
+                }
+            }
+            process.waitFor();
+            if (!done) {
+                System.out.println("   generator exited with " + process.exitValue() + " before DONE");
+            }
+            tick.shutdownNow();
+            monitor.shutdown();
+            connections.shutdown();
+        }
+
+        private Map<String, Object> statusOf(String pid) {
+            return monitor.getPollStatus().stream()
+                .filter(s -> pid.equals(s.get("pid")))
+                .findFirst().orElse(Map.of());
+        }
+
+        private static void proceed(Process process) throws Exception {
+            process.getOutputStream().write('\n');
+            process.getOutputStream().flush();
+        }
+
+        /**
+         * Connected, wait-graph MBean in place when the mode uses it, first poll done: the
+         * generator's clock starts only now, so attach time is not counted as detection latency.
+         */
+        void warmUp(String pid) throws Exception {
+            connections.awaitConnected(pid, WARM_UP_MS);
+            long deadline = System.currentTimeMillis() + WARM_UP_MS;
+            ObjectName waitGraph = new ObjectName(WAIT_GRAPH_MBEAN);
+            while (waitGraphMode && !connections.mbeanConnection(pid).isRegistered(waitGraph)) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Wait-graph MBean not registered in PID " + pid);
+                }
+                Thread.sleep(100);
+            }
+            while (monitor.getLatestResult(pid) == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+        }
+
+        void report() {
+            List<Long> detect = new ArrayList<>();
+            List<Long> clear = new ArrayList<>();
+            int missed = 0;
+            for (Map.Entry<Integer, long[]> cycle : members.entrySet()) {
+                long injected = injectedAt.get(cycle.getKey());
+                Long reported = latest(firstReported, cycle.getValue());
+                if (reported == null) {
+                    missed++;
+                    continue;
+                }
+                detect.add(reported - injected);
+                Long released = releasedAt.get(cycle.getKey());
+                Long cleared = latest(firstCleared, cycle.getValue());
+                if (released != null && cleared != null) {
+                    clear.add(cleared - released);
+                }
+            }
+            System.out.println("   injected " + members.size() + ", detected " + detect.size() + ", missed " + missed
+                + ", released " + releasedAt.size() + ", cleared " + clear.size());
+            System.out.println("   time-to-detect (ms) " + distribution(detect));
+            System.out.println("   time-to-clear  (ms) " + distribution(clear));
+            System.out.println("   polls " + pollStatus.get("polls") + ", failures " + pollStatus.get("failures")
+                + ", timeouts " + pollStatus.get("timeouts") + ", skipped " + pollStatus.get("skipped"));
+        }
+
+        /**
+         * A cycle counts as reported once every member was reported; null if one never was.
+         */
+        private static Long latest(Map<Long, Long> byThread, long[] tids) {
+            long latest = Long.MIN_VALUE;
+            for (long tid : tids) {
+                Long at = byThread.get(tid);
+                if (at == null) return null;
+                latest = Math.max(latest, at);
+            }
+            return latest;
+        }
+    }
+
+    private static String distribution(List<Long> nanos) {
+        if (nanos.isEmpty()) {
+            return "n=0";
+        }
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        return String.format("n=%d min=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f", sorted.length,
+            millis(sorted[0]), millis(percentile(sorted, 0.5)), millis(percentile(sorted, 0.9)),
+            millis(percentile(sorted, 0.99)), millis(sorted[sorted.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Same clock as the generator's timestamps.
+     */
+    private static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+}
@@ -0,0 +1,233 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scriptable load generator for time-to-detect measurements
+ *
+ * Runs background workers that churn through a shared lock pool, then injects deadlock cycles
+ * at a fixed interval and prints one machine-readable line per event on stdout:
+ *
+ *   READY   <pid>
+ *   INJECT  <seq> <epochNanos> <shape> <tid>,<tid>,...
+ *   RELEASE <seq> <epochNanos>
+ *   DONE
+ *
+ * The INJECT timestamp is taken when every member holds its first lock, right before each goes
+ * for the next one, so the cycle closes within microseconds of it. Cycles of the interruptible
+ * shape are broken by interrupting one member --release-ms after injection (RELEASE line);
+ * monitor and reentrant cycles stay deadlocked until the JVM exits.
+ *
+ * With --await-start the generator waits for a line on stdin after READY, so a harness can attach
+ * and warm up before the clock starts, and again after DONE, so it can detach before the exit.
+ *
+ * To run: java LoadGenerator.java --workers 200 --deadlocks 10 --shape mixed --release-ms 2000
+ *
+ * Options (defaults in brackets):
+ *   --workers N        background worker threads [100]
+ *   --locks N          shared lock pool size [64]
+ *   --hold-us N        time a worker holds its locks [50]
+ *   --think-us N       pause between acquisitions [1000]
+ *   --deadlocks N      cycles to inject [10]
+ *   --size N           threads per cycle [2]
+ *   --shape S          monitor | reentrant | interruptible | mixed [mixed]
+ *   --await-start B    wait for a line on stdin after READY and DONE [false]
+ *   --start-delay-ms N before the first injection [5000]
+ *   --interval-ms N    between injections [3000]
+ *   --release-ms N     break interruptible cycles after this long, 0 = never [2000]
+ *   --linger-ms N      stay alive after the last injection [5000]
+ */
+public class LoadGenerator {
+
+    private static final String[] SHAPES = {"monitor", "reentrant", "interruptible"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parse(args);
+        int workers = intOpt(opts, "workers", 100);
+        int locks = intOpt(opts, "locks", 64);
+        long holdNanos = intOpt(opts, "hold-us", 50) * 1000L;
+        long thinkNanos = intOpt(opts, "think-us", 1000) * 1000L;
+        int deadlocks = intOpt(opts, "deadlocks", 10);
+        int size = Math.max(2, intOpt(opts, "size", 2));
+        String shape = opts.getOrDefault("shape", "mixed");
+        long startDelayMs = intOpt(opts, "start-delay-ms", 5000);
+        long intervalMs = intOpt(opts, "interval-ms", 3000);
+        long releaseMs = intOpt(opts, "release-ms", 2000);
+        long lingerMs = intOpt(opts, "linger-ms", 5000);
+        boolean awaitStart = Boolean.parseBoolean(opts.getOrDefault("await-start", "false"));
+
+        ReentrantLock[] pool = new ReentrantLock[locks];
+        for (int i = 0; i < locks; i++) {
+            pool[i] = new ReentrantLock();
+        }
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(() -> churn(pool, holdNanos, thinkNanos), "load-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        BufferedReader stdin = new BufferedReader(new InputStreamReader(System.in));
+        emit("READY " + ProcessHandle.current().pid());
+        if (awaitStart) {
+            stdin.readLine();
+        }
+
+        Thread.sleep(startDelayMs);
+        for (int seq = 1; seq <= deadlocks; seq++) {
+            String cycleShape = "mixed".equals(shape) ? SHAPES[(seq - 1) % SHAPES.length] : shape;
+            inject(seq, cycleShape, size, releaseMs);
+            if (seq < deadlocks) {
+                Thread.sleep(intervalMs);
+            }
+        }
+        Thread.sleep(lingerMs);
+        emit("DONE");
+        if (awaitStart) {
+            stdin.readLine();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Background contention: take one or two pool locks in index order (never a cycle), hold, pause.
+     */
+    private static void churn(ReentrantLock[] pool, long holdNanos, long thinkNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int first = random.nextInt(pool.length);
+            int second = random.nextInt(pool.length);
+            ReentrantLock a = pool[Math.min(first, second)];
+            ReentrantLock b = pool[Math.max(first, second)];
+            a.lock();
+            try {
+                b.lock();
+                try {
+                    LockSupport.parkNanos(holdNanos);
+                } finally {
+                    b.unlock();
+                }
+            } finally {
+                a.unlock();
+            }
+            LockSupport.parkNanos(thinkNanos);
+        }
+    }
+
+    private static void inject(int seq, String shape, int size, long releaseMs) throws Exception {
+        Object[] monitors = new Object[size];
+        ReentrantLock[] locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            monitors[i] = new Object();
+            locks[i] = new ReentrantLock();
+        }
+        long[] injectedAt = new long[1];
+        CyclicBarrier allHoldFirst = new CyclicBarrier(size, () -> injectedAt[0] = epochNanos());
+        List<Thread> members = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int own = i;
+            int next = (i + 1) % size;
+            Runnable body = switch (shape) {
+                case "monitor" -> () -> {
+                    synchronized (monitors[own]) {
+                        await(allHoldFirst);
+                        synchronized (monitors[next]) {
+                            // never reached
+                        }
+                    }
+                };
+                case "reentrant" -> () -> {
+                    locks[own].lock();
+                    await(allHoldFirst);
+                    locks[next].lock();
+                };
+                case "interruptible" -> () -> {
+                    locks[own].lock();
+                    try {
+                        await(allHoldFirst);
+                        locks[next].lockInterruptibly();
+                        locks[next].unlock();
+                    } catch (InterruptedException e) {
+                        // released by the generator: drop our lock so the rest of the cycle drains
+                    } finally {
+                        locks[own].unlock();
+                    }
+                };
+                default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+            };
+            Thread t = new Thread(body, "injected-" + seq + "-" + i);
+            t.setDaemon(true);
+            members.add(t);
+        }
+        for (Thread t : members) {
+            t.start();
+        }
+        while (injectedAt[0] == 0) {
+            Thread.onSpinWait();
+        }
+        StringBuilder tids = new StringBuilder();
+        for (Thread t : members) {
+            if (tids.length() > 0) tids.append(',');
+            tids.append(t.threadId());
+        }
+        emit("INJECT " + seq + " " + injectedAt[0] + " " + shape + " " + tids);
+
+        if ("interruptible".equals(shape) && releaseMs > 0) {
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(releaseMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long at = epochNanos();
+                members.get(0).interrupt();
+                emit("RELEASE " + seq + " " + at);
+            }, "releaser-" + seq);
+            releaser.setDaemon(true);
+            releaser.start();
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Wall-clock nanoseconds, comparable with timestamps taken in another JVM on the same host.
+     */
+    static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private static synchronized void emit(String line) {
+        System.out.println(line);
+        System.out.flush();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+            }
+            opts.put(args[i].substring(2), args[i + 1]);
+        }
+        return opts;
+    }
+
+    private static int intOpt(Map<String, String> opts, String name, int defaultValue) {
+        String value = opts.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}